@@ -35,6 +35,7 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authz -> authz
                         .requestMatchers("/api/auth/**", "/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
 
+                        .requestMatchers(HttpMethod.GET, "/api/clinicas/imports/**").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/clinicas/**", "/api/clinicas").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/clinicas/**", "/api/clinicas").authenticated()
                         .requestMatchers(HttpMethod.PUT, "/api/clinicas/**", "/api/clinicas").authenticated()
@@ -1,21 +1,40 @@
 package com.guiamedicosback.guia.controller;
 
 import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
+import com.guiamedicosback.guia.entity.dto.ImportacaoJobDTO;
+import com.guiamedicosback.guia.entity.dto.PaginaClinicasDTO;
+import com.guiamedicosback.guia.entity.dto.SugestaoDTO;
 import com.guiamedicosback.guia.service.ClinicaService;
-import com.guiamedicosback.guia.service.ExcelProcessorProced;
+import com.guiamedicosback.guia.service.ExcelExportService;
+import com.guiamedicosback.guia.service.ImportacaoJobService;
+import com.guiamedicosback.guia.service.busca.CampoSugestao;
+import com.guiamedicosback.guia.service.busca.ConsultaBooleana;
+import com.guiamedicosback.guia.service.busca.ModeloLeituraIndisponivelException;
+import com.guiamedicosback.guia.service.busca.OrdenacaoClinicas;
+import com.guiamedicosback.guia.service.busca.RespostaJson;
+import com.guiamedicosback.guia.service.importacao.FaseImportacao;
+import com.guiamedicosback.guia.service.importacao.ModoImportacao;
+import com.guiamedicosback.guia.service.importacao.TipoImportacao;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/clinicas")
@@ -25,17 +44,39 @@ import java.util.List;
 @Slf4j
 public class ClinicaController {
 
+    private static final List<String> EXTENSOES_ACEITAS = List.of(".xlsx", ".xls", ".csv", ".tsv");
+
     private final ClinicaService clinicaService;
-    private final ExcelProcessorProced excelProcessorProced;
+    private final ImportacaoJobService importacaoJobService;
+    private final ExcelExportService excelExportService;
 
 
-    @Operation(summary = "Upload de arquivo Excel com clínicas",
-            description = "Processa um arquivo Excel contendo dados de clínicas e salva no banco de dados")
+    @Operation(summary = "Upload de arquivo Excel ou CSV com clínicas",
+            description = "Enfileira a importação de um arquivo Excel (.xlsx, .xls) ou CSV/TSV com os dados das clínicas, que substitui o guia no banco de dados. " +
+                    "Retorna imediatamente o job de importação, consultável em /api/clinicas/imports/{id}. " +
+                    "Um arquivo idêntico ao último aplicado no mesmo modo retorna 200 com a fase SEM_ALTERACOES, sem reprocessar. " +
+                    "Importações de clínicas ou de procedimentos que ainda estavam na fila são descartadas, e seus ids vêm em 'descartados'. " +
+                    "O parâmetro opcional 'modo' (JPA, BULK, STAGING ou DIFF) escolhe a estratégia de gravação")
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<String> uploadClinicas(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadClinicas(@RequestParam("file") MultipartFile file,
+                                            @RequestParam(required = false) ModoImportacao modo) {
 
         log.debug("Recebendo arquivo para upload: {}", file.getOriginalFilename());
+        return enfileirarImportacao(TipoImportacao.CLINICAS, file, modo);
+    }
+
+    @Operation(summary = "Upload de Excel ou CSV para importar Grupos, Subgrupos e Procedimentos",
+            description = "Enfileira a importação que atualiza clínicas existentes (ou cria novas) com os procedimentos do arquivo " +
+                    "(Excel .xlsx/.xls ou CSV/TSV). " +
+                    "Retorna imediatamente o job de importação, consultável em /api/clinicas/imports/{id}")
+    @PostMapping(value = "/upload-procedimentos", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadProcedimentos(@RequestParam("file") MultipartFile file) {
+
+        log.debug("Recebendo arquivo de procedimentos: {}", file.getOriginalFilename());
+        return enfileirarImportacao(TipoImportacao.PROCEDIMENTOS, file, null);
+    }
 
+    private ResponseEntity<?> enfileirarImportacao(TipoImportacao tipo, MultipartFile file, ModoImportacao modo) {
         try {
             // Validação básica do arquivo
             if (file.isEmpty()) {
@@ -43,56 +84,61 @@ public class ClinicaController {
             }
 
             String originalFilename = file.getOriginalFilename();
-            if (originalFilename == null || (!originalFilename.toLowerCase().endsWith(".xlsx") && !originalFilename.toLowerCase().endsWith(".xls"))) {
-                return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body("Apenas arquivos Excel (.xlsx, .xls) são suportados");
+            if (originalFilename == null || EXTENSOES_ACEITAS.stream().noneMatch(originalFilename.toLowerCase()::endsWith)) {
+                return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body("Apenas arquivos Excel (.xlsx, .xls) ou CSV/TSV (.csv, .tsv) são suportados");
             }
 
-            clinicaService.addClinicaFromFile(file);
-
-            log.debug("Arquivo {} processado com sucesso", originalFilename);
-            return ResponseEntity.ok("Arquivo processado e clínicas salvas com sucesso!");
+            ImportacaoJobDTO job = importacaoJobService.enfileirar(tipo, file, modo);
+            var resposta = job.fase() == FaseImportacao.SEM_ALTERACOES
+                    ? ResponseEntity.ok()
+                    : ResponseEntity.accepted();
+            return resposta
+                    .location(URI.create("/api/clinicas/imports/" + job.id()))
+                    .body(job);
 
         } catch (IOException e) {
-            log.error("Erro de IO ao processar arquivo: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Erro ao processar o arquivo: " + e.getMessage());
+            log.error("Erro de IO ao receber arquivo: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Erro ao receber o arquivo: " + e.getMessage());
         } catch (Exception e) {
-            log.error("Erro interno ao processar arquivo: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro interno ao processar o arquivo: " + e.getMessage());
+            log.error("Erro interno ao enfileirar importação: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro interno ao receber o arquivo: " + e.getMessage());
         }
     }
 
-    @Operation(summary = "Upload de Excel para importar Grupos, Subgrupos e Procedimentos",
-            description = "Atualiza clínicas existentes (ou cria novas) e importa procedimentos a partir do Excel")
-    @PostMapping(value = "/upload-procedimentos", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<String> uploadProcedimentos(@RequestParam("file") MultipartFile file) {
-
-        log.debug("Recebendo arquivo de procedimentos: {}", file.getOriginalFilename());
-
-        try {
-            if (file.isEmpty()) {
-                return ResponseEntity.badRequest().body("Arquivo vazio.");
-            }
-
-            String name = file.getOriginalFilename();
-            if (name == null || (!name.toLowerCase().endsWith(".xlsx") && !name.toLowerCase().endsWith(".xls"))) {
-                return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
-                        .body("Apenas arquivos Excel (.xlsx, .xls) são suportados.");
-            }
-
-            excelProcessorProced.importarProcedimentos(file);
+    @Operation(summary = "Status de uma importação",
+            description = "Retorna a fase, as linhas lidas e gravadas, a vazão e os erros de um job de importação")
+    @GetMapping("/imports/{id}")
+    public ResponseEntity<ImportacaoJobDTO> getImportacao(@PathVariable UUID id) {
+        return importacaoJobService.consultar(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
 
-            return ResponseEntity.ok("Procedimentos importados e vinculados às clínicas com sucesso!");
 
-        } catch (IOException e) {
-            log.error("Erro de IO ao processar Excel de procedimentos", e);
-            return ResponseEntity.badRequest().body("Erro ao ler o arquivo: " + e.getMessage());
-        } catch (Exception e) {
-            log.error("Erro ao importar procedimentos", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Erro interno ao importar procedimentos: " + e.getMessage());
-        }
+    @Operation(summary = "Exportar o guia em Excel",
+            description = "Gera um .xlsx com o guia inteiro no mesmo layout da importação (prestador, grupo, subgrupo, procedimento). " +
+                    "O arquivo é gerado em streaming, direto na resposta")
+    @GetMapping("/export.xlsx")
+    public ResponseEntity<StreamingResponseBody> exportarXlsx() {
+        log.debug("Exportando o guia em Excel");
+        StreamingResponseBody corpo = excelExportService::exportarXlsx;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("guia-medicos.xlsx").build().toString())
+                .body(corpo);
     }
 
+    @Operation(summary = "Stream do guia em NDJSON",
+            description = "Retorna o guia inteiro em JSON delimitado por linhas (application/x-ndjson), uma clínica completa por linha. " +
+                    "A resposta é gerada em streaming, para consumidores em lote que não cabem numa lista única em memória")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamClinicas() {
+        log.debug("Iniciando stream do guia em NDJSON");
+        StreamingResponseBody corpo = clinicaService::streamClinicas;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(corpo);
+    }
 
     @Operation(summary = "Adicionar nova clínica", description = "Adiciona uma nova clínica ao sistema")
     @PostMapping
@@ -104,20 +150,40 @@ public class ClinicaController {
             ClinicaDTO createdClinica = clinicaService.addClinica(clinicaDTO);
             log.debug("Clínica adicionada com sucesso: {}", createdClinica.nome());
             return ResponseEntity.status(HttpStatus.CREATED).body(createdClinica);
+        } catch (CannotAcquireLockException e) {
+            log.warn("Clínica não adicionada, guia em gravação: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             log.error("Erro ao adicionar clínica: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
-    @Operation(summary = "Listar todas as clínicas", description = "Retorna uma lista com todas as clínicas cadastradas")
+    @Operation(summary = "Listar todas as clínicas",
+            description = "Retorna uma lista com todas as clínicas cadastradas. Com 'limit', retorna uma página de até 'limit' clínicas " +
+                    "na ordem 'ordem' (NOME ou MUNICIPIO) e o 'proximoCursor', a ser enviado em 'cursor' para buscar a página seguinte. " +
+                    "A lista completa tem ETag e responde 304 a If-None-Match, e vem em gzip se o cliente aceitar")
     @GetMapping
-    public ResponseEntity<List<ClinicaDTO>> getAllClinicas() {
+    public ResponseEntity<?> getAllClinicas(@RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) OrdenacaoClinicas ordem,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         log.debug("Buscando todas as clínicas");
 
         try {
+            if (limit != null) {
+                return ResponseEntity.ok(clinicaService.getClinicas(ordem, cursor, limit));
+            }
+            var pronta = clinicaService.getClinicasSerializadas();
+            if (pronta.isPresent()) {
+                return respostaPronta(pronta.get(), ifNoneMatch, acceptEncoding);
+            }
             List<ClinicaDTO> clinicas = clinicaService.getClinicas();
             return ResponseEntity.ok(clinicas);
+        } catch (IllegalArgumentException e) {
+            log.warn("Parâmetros de paginação inválidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             log.error("Erro ao buscar todas as clínicas: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -134,6 +200,9 @@ public class ClinicaController {
             clinicaService.deleteClinica(parseId);
             log.debug("Clínica com ID {} deletada com sucesso", id);
             return ResponseEntity.noContent().build();
+        } catch (CannotAcquireLockException e) {
+            log.warn("Clínica com ID {} não deletada, guia em gravação: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             log.error("Erro ao deletar clínica com ID {}: {}", id, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -149,6 +218,9 @@ public class ClinicaController {
             ClinicaDTO updatedClinica = clinicaService.updateClinica(parseId, clinicaDTO);
             log.debug("Clínica com ID {} atualizada com sucesso", id);
             return ResponseEntity.ok(updatedClinica);
+        } catch (CannotAcquireLockException e) {
+            log.warn("Clínica com ID {} não atualizada, guia em gravação: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (RuntimeException e) {
             log.warn("Clínica não atualizada com ID: {}", id);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -158,14 +230,21 @@ public class ClinicaController {
         }
     }
 
-    @Operation(summary = "Buscar clínica por ID", description = "Retorna os detalhes de uma clínica específica pelo seu ID")
+    @Operation(summary = "Buscar clínica por ID",
+            description = "Retorna os detalhes de uma clínica específica pelo seu ID, com ETag e 304 para If-None-Match")
     @GetMapping("/{id}")
-    public ResponseEntity<ClinicaDTO> getClinicaById(@PathVariable String id) {
+    public ResponseEntity<?> getClinicaById(@PathVariable String id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 
         log.debug("Buscando clínica com ID: {}", id);
         Long parseId = Long.parseLong(id);
 
         try {
+            var pronta = clinicaService.getClinicaSerializada(parseId);
+            if (pronta.isPresent()) {
+                return respostaPronta(pronta.get(), ifNoneMatch, acceptEncoding);
+            }
             ClinicaDTO clinica = clinicaService.getClinicaById(parseId);
             log.debug("Clínica encontrada: {}", clinica.nome());
             return ResponseEntity.ok(clinica);
@@ -178,31 +257,148 @@ public class ClinicaController {
         }
     }
 
-    @Operation(summary = "Busca combinada de clínicas", description = "Retorna clínicas filtradas por múltiplos critérios (todos os parâmetros são opcionais)")
+    @Operation(summary = "Busca combinada de clínicas",
+            description = "Retorna clínicas filtradas por múltiplos critérios (todos os parâmetros são opcionais). " +
+                    "'q' é uma busca textual em nome, município, endereço, grupos, subgrupos e procedimentos: todos os termos " +
+                    "precisam aparecer, cada um como início de palavra, sem diferenciar acentos e maiúsculas. " +
+                    "Com 'limit', 'cursor' e 'ordem', retorna uma página como na listagem. Com 'facetas=true', a resposta vem " +
+                    "no formato de página e traz também o número de clínicas do resultado por município, grupo e subgrupo. " +
+                    "'todos', 'algum' e 'nenhum' recebem termos campo:valor (campo municipio, grupo, subgrupo ou procedimento; " +
+                    "o valor é comparado inteiro, sem diferenciar acentos e maiúsculas) e podem ser repetidos: a clínica precisa ter " +
+                    "todos os termos de 'todos', ao menos um de 'algum' e nenhum de 'nenhum', em qualquer grupo ou subgrupo. " +
+                    "Ex.: todos=procedimento:hemograma&todos=procedimento:glicemia&nenhum=municipio:santos. " +
+                    "Logo após a inicialização, enquanto os índices em memória são montados, 'q' e 'facetas=true' respondem 503")
     @GetMapping("/busca")
-    public ResponseEntity<List<ClinicaDTO>> searchClinicas(
+    public ResponseEntity<?> searchClinicas(
             @RequestParam(required = false) String nome,
             @RequestParam(required = false) String municipio,
             @RequestParam(required = false) String endereco,
             @RequestParam(required = false) String procedimento,
             @RequestParam(required = false) String grupo,
-            @RequestParam(required = false) String subgrupo) {
+            @RequestParam(required = false) String subgrupo,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) OrdenacaoClinicas ordem,
+            @RequestParam(defaultValue = "false") boolean facetas,
+            HttpServletRequest requisicao) {
 
 
-        log.debug("Buscando clínicas com critérios - Nome: {}, Município: {}, Endereço: {}, Procedimento: {}, Grupo: {}, Subgrupo {}", nome, municipio, endereco, procedimento, grupo,subgrupo );
+        log.debug("Buscando clínicas com critérios - Nome: {}, Município: {}, Endereço: {}, Procedimento: {}, Grupo: {}, Subgrupo {}, Consulta: {}", nome, municipio, endereco, procedimento, grupo, subgrupo, q);
 
         try {
+            // Lidos direto da requisição: o binding de lista separaria em vírgulas, que aparecem nos nomes
+            ConsultaBooleana termos = ConsultaBooleana.de(requisicao.getParameterValues("todos"),
+                    requisicao.getParameterValues("algum"), requisicao.getParameterValues("nenhum"));
+            if (facetas) {
+                PaginaClinicasDTO pagina = clinicaService.searchClinicasComFacetas(
+                        nome, municipio, endereco, procedimento, grupo, subgrupo, q, termos, ordem, cursor, limit);
+                log.debug("Encontradas {} clínicas com facetas para os critérios especificados", pagina.clinicas().size());
+                return ResponseEntity.ok(pagina);
+            }
+            if (limit != null) {
+                PaginaClinicasDTO pagina = clinicaService.searchClinicas(
+                        nome, municipio, endereco, procedimento, grupo, subgrupo, q, termos, ordem, cursor, limit);
+                log.debug("Página com {} clínicas para os critérios especificados", pagina.clinicas().size());
+                return ResponseEntity.ok(pagina);
+            }
             List<ClinicaDTO> clinicas = clinicaService.searchClinicas(
-                    nome, municipio, endereco, procedimento, grupo, subgrupo);
+                    nome, municipio, endereco, procedimento, grupo, subgrupo, q, termos);
             log.debug("Encontradas {} clínicas com os critérios especificados", clinicas.size());
             return ResponseEntity.ok(clinicas);
 
         } catch (IllegalArgumentException e) {
             log.warn("Parâmetros de busca inválidos: {}", e.getMessage());
-            return ResponseEntity.badRequest().build();
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (ModeloLeituraIndisponivelException e) {
+            log.warn("Busca recusada: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (Exception e) {
             log.error("Erro na busca combinada: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Sugestões de preenchimento da busca",
+            description = "Retorna os valores de 'campo' (nome, municipio, grupo, subgrupo ou procedimento) que começam com 'q', " +
+                    "sem diferenciar acentos e maiúsculas, com o número de clínicas que têm cada um. Vêm no máximo 'limit' " +
+                    "valores (padrão 10), dos mais frequentes para os menos. Responde 503 logo após a inicialização, enquanto o " +
+                    "índice em memória é montado")
+    @GetMapping("/sugestoes")
+    public ResponseEntity<?> getSugestoes(@RequestParam String campo,
+                                          @RequestParam(required = false) String q,
+                                          @RequestParam(defaultValue = "10") int limit) {
+        log.debug("Buscando sugestões - Campo: {}, Prefixo: {}", campo, q);
+
+        try {
+            List<SugestaoDTO> sugestoes = clinicaService.getSugestoes(CampoSugestao.de(campo), q, limit);
+            return ResponseEntity.ok(sugestoes);
+        } catch (IllegalArgumentException e) {
+            log.warn("Parâmetros de sugestão inválidos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (ModeloLeituraIndisponivelException e) {
+            log.warn("Sugestões recusadas: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Erro ao buscar sugestões: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Responde com o corpo pré-serializado: 304 se a ETag da representação escolhida está em
+     * If-None-Match, senão os bytes em gzip (se o cliente aceita e há versão comprimida) ou em JSON.
+     */
+    private ResponseEntity<?> respostaPronta(RespostaJson resposta, String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = resposta.gzip() != null && aceitaGzip(acceptEncoding);
+        String etag = gzip ? resposta.etagGzip() : resposta.etag();
+        if (correspondeEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        var resposta200 = ResponseEntity.ok()
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return resposta200.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(resposta.gzip());
+        }
+        return resposta200.body(resposta.json());
+    }
+
+    private static boolean aceitaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String item : acceptEncoding.split(",")) {
+            String[] partes = item.split(";");
+            if (partes[0].trim().equalsIgnoreCase("gzip")) {
+                // "gzip;q=0" recusa explicitamente
+                return partes.length < 2 || !partes[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    // If-None-Match usa comparação fraca: o prefixo W/ é ignorado
+    private static boolean correspondeEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidata : ifNoneMatch.split(",")) {
+            String valor = candidata.trim();
+            if (valor.equals("*")) {
+                return true;
+            }
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
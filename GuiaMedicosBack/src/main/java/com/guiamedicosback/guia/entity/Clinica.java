@@ -1,5 +1,6 @@
 package com.guiamedicosback.guia.entity;
 
+import com.guiamedicosback.guia.service.utils.Canonicalizador;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -7,6 +8,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_clinica_nome_canonico", columnList = "nome_canonico"),
+        @Index(name = "idx_clinica_municipio_canonico", columnList = "municipio_canonico"),
+        @Index(name = "idx_clinica_endereco_canonico", columnList = "endereco_canonico")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -23,19 +29,25 @@ public class Clinica {
     private String telefone;
     private String email;
 
+    // Formas canônicas (Canonicalizador) usadas na busca e no casamento da importação
+    @Column(name = "nome_canonico")
+    private String nomeCanonico;
+    @Column(name = "endereco_canonico")
+    private String enderecoCanonico;
+    @Column(name = "municipio_canonico")
+    private String municipioCanonico;
+
+    // Impressão digital do conteúdo, incluindo os filhos (ver ImpressaoDigital)
+    private Long impressao;
+
     @OneToMany(mappedBy = "clinica", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Grupo> grupos = new ArrayList<>();
 
-    // Método auxiliar para encontrar ou criar um grupo
-    public Grupo encontrarOuCriarGrupo(String nomeGrupo) {
-        for (Grupo grupo : grupos) {
-            if (grupo.getNome().equals(nomeGrupo)) {
-                return grupo;
-            }
-        }
-        Grupo novoGrupo = new Grupo(nomeGrupo);
-        novoGrupo.setClinica(this);
-        grupos.add(novoGrupo);
-        return novoGrupo;
+    @PrePersist
+    @PreUpdate
+    public void atualizarFormasCanonicas() {
+        nomeCanonico = Canonicalizador.canonico(nome);
+        enderecoCanonico = Canonicalizador.canonico(endereco);
+        municipioCanonico = Canonicalizador.canonico(municipio);
     }
 }
@@ -1,5 +1,6 @@
 package com.guiamedicosback.guia.entity;
 
+import com.guiamedicosback.guia.service.utils.Canonicalizador;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -14,6 +15,7 @@ import java.util.List;
 @NoArgsConstructor
 @Builder
 @Entity
+@Table(indexes = @Index(name = "idx_grupo_nome_canonico", columnList = "nome_canonico"))
 public class Grupo {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -21,6 +23,12 @@ public class Grupo {
 
     private String nome;
 
+    @Column(name = "nome_canonico")
+    private String nomeCanonico;
+
+    // Impressão digital do conteúdo, incluindo os filhos (ver ImpressaoDigital)
+    private Long impressao;
+
     @ManyToOne
     @JoinColumn(name = "clinica_id")
     private Clinica clinica;
@@ -32,16 +40,9 @@ public class Grupo {
         this.nome = nomeGrupo;
     }
 
-    // Método auxiliar para encontrar ou criar um subgrupo
-    public Subgrupo encontrarOuCriarSubgrupo(String nomeSubgrupo) {
-        for (Subgrupo subgrupo : subgrupos) {
-            if (subgrupo.getNome().equals(nomeSubgrupo)) {
-                return subgrupo;
-            }
-        }
-        Subgrupo novoSubgrupo = new Subgrupo(nomeSubgrupo);
-        novoSubgrupo.setGrupo(this);
-        subgrupos.add(novoSubgrupo);
-        return novoSubgrupo;
+    @PrePersist
+    @PreUpdate
+    public void atualizarFormasCanonicas() {
+        nomeCanonico = Canonicalizador.canonico(nome);
     }
-}
\ No newline at end of file
+}
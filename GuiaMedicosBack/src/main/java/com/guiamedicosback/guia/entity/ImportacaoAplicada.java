@@ -0,0 +1,34 @@
+package com.guiamedicosback.guia.entity;
+
+import com.guiamedicosback.guia.service.importacao.ModoImportacao;
+import com.guiamedicosback.guia.service.importacao.TipoImportacao;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Último arquivo aplicado com sucesso para cada tipo de importação, identificado pelo SHA-256
+ * do conteúdo e pelo modo de gravação. Enquanto o registro existe, o guia é exatamente o resultado desse arquivo.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportacaoAplicada {
+    @Id
+    @Enumerated(EnumType.STRING)
+    private TipoImportacao tipo;
+
+    @Column(length = 64, nullable = false)
+    private String hash;
+
+    // Nulo nas importações de procedimentos, que não têm modo
+    @Enumerated(EnumType.STRING)
+    private ModoImportacao modo;
+
+    private String arquivo;
+    private Instant aplicadaEm;
+}
@@ -1,25 +1,76 @@
 package com.guiamedicosback.guia.entity;
 
-import jakarta.persistence.Column;
+import com.guiamedicosback.guia.service.utils.Canonicalizador;
 import jakarta.persistence.Embeddable;
-import lombok.Builder;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Transient;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import lombok.Setter;
 
+import java.util.Objects;
+
+/**
+ * Procedimento de um subgrupo, gravado na tabela {@code procedimentos} como referência ao
+ * {@link ProcedimentoCatalogo}.
+ * <p>
+ * Um procedimento lido do arquivo ou da API começa só com o nome; antes de ser gravado, o
+ * {@code CatalogoProcedimentos} o associa à entrada do catálogo com a mesma forma canônica.
+ */
 @Embeddable
-@Getter
-@Setter
 @NoArgsConstructor
-@Builder
 public class Procedimento {
-    @Column(columnDefinition = "TEXT")
+    @Getter
+    @ManyToOne
+    @JoinColumn(name = "procedimento_id")
+    private ProcedimentoCatalogo catalogo;
+
+    // Nome e especialização ainda sem entrada no catálogo
+    @Transient
     private String nome;
-    @Column(columnDefinition = "TEXT")
-    private String especializacao; // Ex: "Imagem", "Laboratorial", "Fisioterapia"
+    @Transient
+    private String especializacao;
 
-    public Procedimento(String especializacao, String procedimentoDesc) {
+    public Procedimento(String nome) {
+        this.nome = nome;
+    }
+
+    public Procedimento(String especializacao, String nome) {
         this.especializacao = especializacao;
-        this.nome = procedimentoDesc;
+        this.nome = nome;
+    }
+
+    public Procedimento(ProcedimentoCatalogo catalogo) {
+        this.catalogo = catalogo;
+    }
+
+    public String getNome() {
+        return catalogo != null ? catalogo.getNome() : nome;
+    }
+
+    // Ex: "Imagem", "Laboratorial", "Fisioterapia"; guardada na entrada do catálogo
+    public String getEspecializacao() {
+        return catalogo != null ? catalogo.getEspecializacao() : especializacao;
+    }
+
+    public String getNomeCanonico() {
+        return catalogo != null ? catalogo.getNomeCanonico() : Canonicalizador.canonico(nome);
+    }
+
+    public void setCatalogo(ProcedimentoCatalogo catalogo) {
+        this.catalogo = catalogo;
+        this.nome = null;
+        this.especializacao = null;
+    }
+
+    // Dois procedimentos são o mesmo se têm a mesma forma canônica, estejam ou não no catálogo
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Procedimento outro && Objects.equals(getNomeCanonico(), outro.getNomeCanonico());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getNomeCanonico());
     }
 }
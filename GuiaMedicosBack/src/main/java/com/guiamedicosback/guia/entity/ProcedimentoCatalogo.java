@@ -0,0 +1,40 @@
+package com.guiamedicosback.guia.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.BatchSize;
+
+/**
+ * Catálogo de procedimentos: uma linha por nome canônico, referenciada pelos subgrupos na tabela
+ * {@code procedimentos}. O nome exibido é a primeira grafia registrada, e a especialização a
+ * informada nesse primeiro registro.
+ * <p>
+ * Entradas só são criadas, nunca alteradas ou apagadas (ver {@code CatalogoProcedimentos}).
+ */
+@Entity
+@Table(name = "procedimento_catalogo",
+        indexes = @Index(name = "idx_procedimento_catalogo_nome_canonico", columnList = "nome_canonico", unique = true))
+// Os procedimentos de muitos subgrupos apontam para poucas entradas: carrega várias por consulta
+@BatchSize(size = 100)
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProcedimentoCatalogo {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false)
+    private String nome;
+
+    @Column(name = "nome_canonico", nullable = false)
+    private String nomeCanonico;
+
+    // Ex: "Imagem", "Laboratorial", "Fisioterapia". Opcional: os arquivos importados não trazem
+    @Column(columnDefinition = "TEXT")
+    private String especializacao;
+
+    public ProcedimentoCatalogo(Integer id, String nome, String nomeCanonico) {
+        this(id, nome, nomeCanonico, null);
+    }
+}
@@ -1,5 +1,6 @@
 package com.guiamedicosback.guia.entity;
 
+import com.guiamedicosback.guia.service.utils.Canonicalizador;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -14,6 +15,7 @@ import java.util.List;
 @NoArgsConstructor
 @Builder
 @Entity
+@Table(indexes = @Index(name = "idx_subgrupo_nome_canonico", columnList = "nome_canonico"))
 public class Subgrupo {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -21,16 +23,28 @@ public class Subgrupo {
 
     private String nome;
 
+    @Column(name = "nome_canonico")
+    private String nomeCanonico;
+
+    // Impressão digital do conteúdo, incluindo os procedimentos (ver ImpressaoDigital)
+    private Long impressao;
+
     @ManyToOne
     @JoinColumn(name = "grupo_id")
     private Grupo grupo;
 
     @ElementCollection
-    @CollectionTable(name = "procedimentos", joinColumns = @JoinColumn(name = "subgrupo_id"))
-    @Column(name = "procedimento")
-    private List<String> procedimentos = new ArrayList<>();
+    @CollectionTable(name = "procedimentos", joinColumns = @JoinColumn(name = "subgrupo_id"),
+            indexes = @Index(name = "idx_procedimentos_procedimento_id", columnList = "procedimento_id"))
+    private List<Procedimento> procedimentos = new ArrayList<>();
 
     public Subgrupo(String nomeSubgrupo) {
         this.nome = nomeSubgrupo;
     }
+
+    @PrePersist
+    @PreUpdate
+    public void atualizarFormasCanonicas() {
+        nomeCanonico = Canonicalizador.canonico(nome);
+    }
 }
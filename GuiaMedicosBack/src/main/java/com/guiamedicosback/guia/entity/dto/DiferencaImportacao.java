@@ -0,0 +1,17 @@
+package com.guiamedicosback.guia.entity.dto;
+
+import lombok.Builder;
+
+/**
+ * Resultado de uma importação incremental. As contagens somam clínicas, grupos e subgrupos;
+ * um nó conta como atualizado quando ele ou algo abaixo dele mudou.
+ */
+@Builder
+public record DiferencaImportacao(
+        long inalterados,
+        long inseridos,
+        long atualizados,
+        long removidos,
+        long linhasGravadas
+) {
+}
@@ -0,0 +1,15 @@
+package com.guiamedicosback.guia.entity.dto;
+
+import lombok.Builder;
+
+/**
+ * Um valor de faceta da busca.
+ *
+ * @param clinicas quantas clínicas do resultado têm esse valor
+ */
+@Builder
+public record FacetaDTO(
+        String valor,
+        int clinicas
+) {
+}
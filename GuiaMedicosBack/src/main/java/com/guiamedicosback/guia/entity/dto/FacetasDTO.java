@@ -0,0 +1,17 @@
+package com.guiamedicosback.guia.entity.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Contagens por município, grupo e subgrupo das clínicas de uma busca, da mais para a menos
+ * frequente. Valores sem nenhuma clínica no resultado não aparecem.
+ */
+@Builder
+public record FacetasDTO(
+        List<FacetaDTO> municipios,
+        List<FacetaDTO> grupos,
+        List<FacetaDTO> subgrupos
+) {
+}
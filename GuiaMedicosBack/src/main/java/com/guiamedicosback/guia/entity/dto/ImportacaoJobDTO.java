@@ -0,0 +1,33 @@
+package com.guiamedicosback.guia.entity.dto;
+
+import com.guiamedicosback.guia.service.importacao.FaseImportacao;
+import com.guiamedicosback.guia.service.importacao.ModoImportacao;
+import com.guiamedicosback.guia.service.importacao.TipoImportacao;
+import lombok.Builder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+public record ImportacaoJobDTO(
+        UUID id,
+        TipoImportacao tipo,
+        ModoImportacao modo,
+        String arquivo,
+        String hash,
+        FaseImportacao fase,
+        long linhasLidas,
+        long linhasGravadas,
+        double linhasPorSegundo,
+        Instant criadoEm,
+        Instant iniciadoEm,
+        Instant concluidoEm,
+        List<String> erros,
+        ResultadoImportacao resultado,
+        // Jobs ainda na fila que este upload de clínicas descartou
+        List<UUID> descartados,
+        // Upload que descartou este job, quando a fase é DESCARTADA
+        UUID substituidoPor
+) {
+}
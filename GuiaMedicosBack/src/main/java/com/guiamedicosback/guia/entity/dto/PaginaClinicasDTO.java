@@ -0,0 +1,17 @@
+package com.guiamedicosback.guia.entity.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Página da listagem ou da busca. {@code proximoCursor} é nulo na última página; {@code facetas}
+ * só vem quando pedidas na busca, e contam o resultado inteiro, não só a página.
+ */
+@Builder
+public record PaginaClinicasDTO(
+        List<ClinicaDTO> clinicas,
+        String proximoCursor,
+        FacetasDTO facetas
+) {
+}
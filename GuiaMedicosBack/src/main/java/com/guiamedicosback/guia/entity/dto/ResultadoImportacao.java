@@ -0,0 +1,66 @@
+package com.guiamedicosback.guia.entity.dto;
+
+import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Subgrupo;
+import com.guiamedicosback.guia.service.importacao.ModoImportacao;
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record ResultadoImportacao(
+        ModoImportacao modo,
+        long clinicas,
+        long grupos,
+        long subgrupos,
+        long procedimentos,
+        long linhasGravadas,
+        long duracaoMs,
+        double linhasPorSegundo,
+        DiferencaImportacao diferenca
+) {
+
+    /**
+     * Monta o resultado a partir da árvore gravada, contando as linhas de cada tabela.
+     */
+    public static ResultadoImportacao de(ModoImportacao modo, List<Clinica> arvore, long duracaoNanos) {
+        return de(modo, arvore, duracaoNanos, null);
+    }
+
+    /**
+     * @param diferenca o que a importação incremental alterou; nesse caso só as linhas efetivamente
+     *                  escritas contam como gravadas
+     */
+    public static ResultadoImportacao de(ModoImportacao modo, List<Clinica> arvore, long duracaoNanos,
+                                         DiferencaImportacao diferenca) {
+        long grupos = 0;
+        long subgrupos = 0;
+        long procedimentos = 0;
+        for (Clinica clinica : arvore) {
+            for (Grupo grupo : clinica.getGrupos()) {
+                grupos++;
+                for (Subgrupo subgrupo : grupo.getSubgrupos()) {
+                    subgrupos++;
+                    procedimentos += subgrupo.getProcedimentos().size();
+                }
+            }
+        }
+
+        long linhas = diferenca != null
+                ? diferenca.linhasGravadas()
+                : arvore.size() + grupos + subgrupos + procedimentos;
+        double segundos = duracaoNanos / 1_000_000_000.0;
+        return ResultadoImportacao.builder()
+                .modo(modo)
+                .clinicas(arvore.size())
+                .grupos(grupos)
+                .subgrupos(subgrupos)
+                .procedimentos(procedimentos)
+                .linhasGravadas(linhas)
+                .duracaoMs(duracaoNanos / 1_000_000)
+                .linhasPorSegundo(segundos > 0 ? linhas / segundos : linhas)
+                .diferenca(diferenca)
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.guiamedicosback.guia.entity.dto;
+
+import lombok.Builder;
+
+/**
+ * Uma sugestão de preenchimento da busca.
+ *
+ * @param ocorrencias quantas clínicas têm esse valor no campo
+ */
+@Builder
+public record SugestaoDTO(
+        String texto,
+        int ocorrencias
+) {
+}
@@ -0,0 +1,684 @@
+package com.guiamedicosback.guia.repository;
+
+import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Procedimento;
+import com.guiamedicosback.guia.entity.Subgrupo;
+import com.guiamedicosback.guia.entity.dto.DiferencaImportacao;
+import com.guiamedicosback.guia.service.importacao.LinhaImportacao;
+import com.guiamedicosback.guia.service.utils.Canonicalizador;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Carga e leitura em massa da árvore de clínicas via JDBC.
+ * <p>
+ * Com {@code GenerationType.IDENTITY} o Hibernate precisa de um round trip por entidade para
+ * descobrir o id gerado. Aqui os ids são pré-alocados a partir do maior id existente e as
+ * linhas de {@code clinica}, {@code grupo}, {@code subgrupo} e {@code procedimentos} são
+ * gravadas com INSERTs de múltiplas linhas. Os procedimentos já devem estar associados ao
+ * catálogo ({@code CatalogoProcedimentos#resolver}).
+ * <p>
+ * A pré-alocação só é segura com a trava {@link TravaRepository#ESCRITA_GUIA} mantida do início
+ * da carga até o commit: as edições manuais pegam a mesma trava antes de gravar com IDENTITY.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ClinicaBulkRepository {
+
+    static final int LINHAS_POR_INSERT = 500;
+
+    // MySQL Connector/J: com Integer.MIN_VALUE o resultado é lido do servidor linha a linha
+    private static final int FETCH_STREAMING = Integer.MIN_VALUE;
+
+    private static final String SUFIXO_NOVO = "_novo";
+    private static final String SUFIXO_ANTIGO = "_antigo";
+
+    // Tabelas do guia, de pai para filho
+    private static final List<String> TABELAS = List.of("clinica", "grupo", "subgrupo", "procedimentos");
+
+    // {tabela, coluna, tabela referenciada}
+    private static final String[][] CHAVES_ESTRANGEIRAS = {
+            {"grupo", "clinica_id", "clinica"},
+            {"subgrupo", "grupo_id", "grupo"},
+            {"procedimentos", "subgrupo_id", "subgrupo"},
+            {"procedimentos", "procedimento_id", "procedimento_catalogo"}
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Substitui todo o guia pela árvore informada, apagando e regravando as tabelas vivas.
+     * Os ids atribuídos são gravados nas entidades.
+     */
+    public void substituirTudo(List<Clinica> clinicas, LongConsumer linhasGravadas) {
+        IdsIniciais ids = idsIniciais();
+        apagarTudo();
+        inserir(clinicas, "", ids, linhasGravadas);
+    }
+
+    /**
+     * Substitui todo o guia sem bloquear os leitores: a árvore é carregada em tabelas de staging
+     * ({@code *_novo}), que entram no lugar das tabelas vivas com um único {@code RENAME TABLE}
+     * atômico. As tabelas antigas são descartadas com {@code DROP TABLE} em vez de DELETE linha a linha.
+     * <p>
+     * Executa DDL (commit implícito no MySQL), então não deve ser chamado dentro de uma transação.
+     */
+    public synchronized void substituirComTrocaAtomica(List<Clinica> clinicas, LongConsumer linhasGravadas) {
+        IdsIniciais ids = idsIniciais();
+
+        // Restos de uma troca interrompida
+        descartarTabelas(SUFIXO_NOVO);
+        descartarTabelas(SUFIXO_ANTIGO);
+
+        for (String tabela : TABELAS) {
+            jdbcTemplate.execute("CREATE TABLE " + tabela + SUFIXO_NOVO + " LIKE " + tabela);
+        }
+
+        try {
+            inserir(clinicas, SUFIXO_NOVO, ids, linhasGravadas);
+
+            // CREATE TABLE ... LIKE não copia chaves estrangeiras; elas são criadas apontando para as
+            // tabelas de staging e acompanham a renomeação
+            String versao = Long.toString(System.currentTimeMillis(), 36);
+            // (o catálogo de procedimentos não é trocado: a referência a ele fica sem sufixo)
+            for (String[] fk : CHAVES_ESTRANGEIRAS) {
+                String referenciada = TABELAS.contains(fk[2]) ? fk[2] + SUFIXO_NOVO : fk[2];
+                jdbcTemplate.execute("ALTER TABLE " + fk[0] + SUFIXO_NOVO
+                        + " ADD CONSTRAINT fk_" + fk[0] + "_" + fk[1] + "_" + versao
+                        + " FOREIGN KEY (" + fk[1] + ") REFERENCES " + referenciada + " (id)");
+            }
+
+            StringBuilder rename = new StringBuilder("RENAME TABLE ");
+            for (String tabela : TABELAS) {
+                rename.append(tabela).append(" TO ").append(tabela).append(SUFIXO_ANTIGO).append(", ")
+                        .append(tabela).append(SUFIXO_NOVO).append(" TO ").append(tabela).append(", ");
+            }
+            rename.setLength(rename.length() - 2);
+            jdbcTemplate.execute(rename.toString());
+        } catch (RuntimeException e) {
+            descartarTabelas(SUFIXO_NOVO);
+            throw e;
+        }
+
+        descartarTabelas(SUFIXO_ANTIGO);
+        log.debug("Troca atômica concluída: {} clínicas publicadas", clinicas.size());
+    }
+
+    /**
+     * Importação incremental: compara a árvore nova com as impressões digitais gravadas e escreve
+     * só o que mudou. Clínicas, grupos e subgrupos são casados pela chave normalizada do nome dentro
+     * do pai; nós inalterados mantêm o id e não são tocados. Deve rodar dentro de uma transação.
+     * <p>
+     * As impressões da árvore nova já devem ter sido calculadas ({@code ImpressaoDigital}).
+     */
+    public synchronized DiferencaImportacao aplicarDiferencas(List<Clinica> clinicas, LongConsumer linhasGravadas) {
+        List<NoGravado> gravadas = carregarImpressoes();
+        Diferenca diferenca = new Diferenca(idsIniciais(), linhasGravadas);
+
+        Map<String, NoGravado> indice = indexar(gravadas);
+        for (Clinica clinica : clinicas) {
+            NoGravado gravada = casar(indice, clinica.getNome());
+            if (gravada == null) {
+                diferenca.insercao.clinica(clinica);
+                diferenca.inseridos += 1 + contarFilhos(clinica);
+            } else if (Objects.equals(gravada.impressao, clinica.getImpressao())) {
+                atribuirIds(clinica, gravada);
+                diferenca.inalterados += 1 + contarFilhos(clinica);
+            } else {
+                clinica.setId(gravada.id);
+                clinica.atualizarFormasCanonicas();
+                diferenca.atualizacoesClinica.add(new Object[]{clinica.getNome(), clinica.getEndereco(),
+                        clinica.getMunicipio(), clinica.getTelefone(), clinica.getEmail(), clinica.getNomeCanonico(),
+                        clinica.getEnderecoCanonico(), clinica.getMunicipioCanonico(), clinica.getImpressao(), clinica.getId()});
+                diferenca.atualizados++;
+                compararGrupos(clinica, gravada, diferenca);
+            }
+        }
+        for (NoGravado gravada : gravadas) {
+            if (!gravada.casado) {
+                diferenca.remover(gravada, 0);
+            }
+        }
+
+        DiferencaImportacao resultado = diferenca.aplicar();
+        log.debug("Importação incremental: {} inalterados, {} inseridos, {} atualizados, {} removidos, {} linhas escritas",
+                resultado.inalterados(), resultado.inseridos(), resultado.atualizados(), resultado.removidos(),
+                resultado.linhasGravadas());
+        return resultado;
+    }
+
+    private void compararGrupos(Clinica clinica, NoGravado gravada, Diferenca diferenca) {
+        Map<String, NoGravado> indice = indexar(gravada.filhos);
+        for (Grupo grupo : clinica.getGrupos()) {
+            NoGravado gravado = casar(indice, grupo.getNome());
+            if (gravado == null) {
+                diferenca.insercao.grupo(grupo, clinica.getId());
+                diferenca.inseridos += 1 + grupo.getSubgrupos().size();
+            } else if (Objects.equals(gravado.impressao, grupo.getImpressao())) {
+                atribuirIds(grupo, gravado);
+                diferenca.inalterados += 1 + grupo.getSubgrupos().size();
+            } else {
+                grupo.setId(gravado.id);
+                grupo.atualizarFormasCanonicas();
+                diferenca.atualizacoesGrupo.add(new Object[]{grupo.getNome(), grupo.getNomeCanonico(), grupo.getImpressao(), grupo.getId()});
+                diferenca.atualizados++;
+                compararSubgrupos(grupo, gravado, diferenca);
+            }
+        }
+        for (NoGravado gravado : gravada.filhos) {
+            if (!gravado.casado) {
+                diferenca.remover(gravado, 1);
+            }
+        }
+    }
+
+    private void compararSubgrupos(Grupo grupo, NoGravado gravado, Diferenca diferenca) {
+        Map<String, NoGravado> indice = indexar(gravado.filhos);
+        for (Subgrupo subgrupo : grupo.getSubgrupos()) {
+            NoGravado gravadoSubgrupo = casar(indice, subgrupo.getNome());
+            if (gravadoSubgrupo == null) {
+                diferenca.insercao.subgrupo(subgrupo, grupo.getId());
+                diferenca.inseridos++;
+            } else if (Objects.equals(gravadoSubgrupo.impressao, subgrupo.getImpressao())) {
+                subgrupo.setId(gravadoSubgrupo.id);
+                diferenca.inalterados++;
+            } else {
+                // Os procedimentos não têm identidade própria: os do subgrupo são regravados
+                subgrupo.setId(gravadoSubgrupo.id);
+                subgrupo.atualizarFormasCanonicas();
+                diferenca.atualizacoesSubgrupo.add(new Object[]{subgrupo.getNome(), subgrupo.getNomeCanonico(),
+                        subgrupo.getImpressao(), subgrupo.getId()});
+                diferenca.procedimentosSubstituidos.add(subgrupo.getId());
+                diferenca.insercao.procedimentos(subgrupo);
+                diferenca.atualizados++;
+            }
+        }
+        for (NoGravado gravadoSubgrupo : gravado.filhos) {
+            if (!gravadoSubgrupo.casado) {
+                diferenca.remover(gravadoSubgrupo, 2);
+            }
+        }
+    }
+
+    /**
+     * Carrega id, nome canônico e impressão de clínicas, grupos e subgrupos (três consultas, sem
+     * procedimentos) e monta a árvore gravada.
+     */
+    private List<NoGravado> carregarImpressoes() {
+        List<NoGravado> clinicas = new ArrayList<>();
+        Map<Long, NoGravado> porId = new HashMap<>();
+        jdbcTemplate.query("SELECT id, nome_canonico, nome, impressao FROM clinica ORDER BY id", rs -> {
+            NoGravado no = new NoGravado(rs.getLong(1), chave(rs.getString(2), rs.getString(3)), rs.getObject(4, Long.class));
+            clinicas.add(no);
+            porId.put(no.id, no);
+        });
+
+        Map<Long, NoGravado> gruposPorId = new HashMap<>();
+        jdbcTemplate.query("SELECT id, clinica_id, nome_canonico, nome, impressao FROM grupo ORDER BY id", rs -> {
+            NoGravado no = new NoGravado(rs.getLong(1), chave(rs.getString(3), rs.getString(4)), rs.getObject(5, Long.class));
+            NoGravado pai = porId.get(rs.getLong(2));
+            if (pai != null) {
+                pai.filhos.add(no);
+                gruposPorId.put(no.id, no);
+            }
+        });
+
+        jdbcTemplate.query("SELECT id, grupo_id, nome_canonico, nome, impressao FROM subgrupo ORDER BY id", rs -> {
+            NoGravado pai = gruposPorId.get(rs.getLong(2));
+            if (pai != null) {
+                pai.filhos.add(new NoGravado(rs.getLong(1), chave(rs.getString(3), rs.getString(4)), rs.getObject(5, Long.class)));
+            }
+        });
+        return clinicas;
+    }
+
+    // Linhas gravadas antes da coluna canônica existir não têm o valor preenchido
+    private static String chave(String nomeCanonico, String nome) {
+        return nomeCanonico != null ? nomeCanonico : Canonicalizador.canonico(nome);
+    }
+
+    // Com nomes repetidos no banco, só o primeiro é casado; os demais acabam removidos
+    private static Map<String, NoGravado> indexar(List<NoGravado> nos) {
+        Map<String, NoGravado> indice = new HashMap<>();
+        for (NoGravado no : nos) {
+            indice.putIfAbsent(no.chave, no);
+        }
+        return indice;
+    }
+
+    private static NoGravado casar(Map<String, NoGravado> indice, String nome) {
+        NoGravado no = indice.remove(Canonicalizador.canonico(nome));
+        if (no != null) {
+            no.casado = true;
+        }
+        return no;
+    }
+
+    // Subárvore inalterada: os ids gravados são copiados para as entidades. Os filhos são casados
+    // pela forma canônica do nome, como em casar(): os gravados vêm em ordem de id, que não é
+    // necessariamente a ordem do arquivo. Nomes repetidos são casados na ordem em que aparecem
+    private static void atribuirIds(Clinica clinica, NoGravado gravada) {
+        clinica.setId(gravada.id);
+        Map<String, ArrayDeque<NoGravado>> grupos = porChave(gravada.filhos);
+        for (Grupo grupo : clinica.getGrupos()) {
+            NoGravado gravado = proximo(grupos, grupo.getNome());
+            if (gravado != null) {
+                atribuirIds(grupo, gravado);
+            }
+        }
+    }
+
+    private static void atribuirIds(Grupo grupo, NoGravado gravado) {
+        grupo.setId(gravado.id);
+        Map<String, ArrayDeque<NoGravado>> subgrupos = porChave(gravado.filhos);
+        for (Subgrupo subgrupo : grupo.getSubgrupos()) {
+            NoGravado gravadoSubgrupo = proximo(subgrupos, subgrupo.getNome());
+            if (gravadoSubgrupo != null) {
+                subgrupo.setId(gravadoSubgrupo.id);
+            }
+        }
+    }
+
+    private static Map<String, ArrayDeque<NoGravado>> porChave(List<NoGravado> nos) {
+        Map<String, ArrayDeque<NoGravado>> indice = new HashMap<>();
+        for (NoGravado no : nos) {
+            indice.computeIfAbsent(no.chave, _ -> new ArrayDeque<>()).add(no);
+        }
+        return indice;
+    }
+
+    private static NoGravado proximo(Map<String, ArrayDeque<NoGravado>> indice, String nome) {
+        ArrayDeque<NoGravado> nos = indice.get(Canonicalizador.canonico(nome));
+        return nos != null ? nos.poll() : null;
+    }
+
+    private static long contarFilhos(Clinica clinica) {
+        long total = clinica.getGrupos().size();
+        for (Grupo grupo : clinica.getGrupos()) {
+            total += grupo.getSubgrupos().size();
+        }
+        return total;
+    }
+
+    /**
+     * @param linhasGravadas notificado com a quantidade de linhas de cada INSERT executado
+     */
+    private void inserir(List<Clinica> clinicas, String sufixo, IdsIniciais ids, LongConsumer linhasGravadas) {
+        Insercao insercao = new Insercao(sufixo, ids, linhasGravadas);
+        for (Clinica clinica : clinicas) {
+            insercao.clinica(clinica);
+        }
+        insercao.finalizar();
+    }
+
+    /**
+     * Percorre o guia inteiro no layout da importação (uma linha por procedimento), na ordem de
+     * clínica, grupo e subgrupo, com um cursor somente-leitura e de avanço único: as linhas são
+     * entregues ao consumidor à medida que chegam do banco, sem acumular o resultado em memória.
+     * <p>
+     * Clínicas sem grupos, grupos sem subgrupos e subgrupos sem procedimentos saem numa linha
+     * parcial, com as colunas dos níveis ausentes vazias; a importação recria esses nós.
+     */
+    public void percorrerLinhas(Consumer<LinhaImportacao> consumidor) {
+        // ResultSet.getRow() não é suportado em resultados lidos linha a linha
+        int[] linha = {1};
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT c.nome, g.nome, s.nome, pc.nome FROM clinica c "
+                            + "LEFT JOIN grupo g ON g.clinica_id = c.id "
+                            + "LEFT JOIN subgrupo s ON s.grupo_id = g.id "
+                            + "LEFT JOIN procedimentos p ON p.subgrupo_id = s.id "
+                            + "LEFT JOIN procedimento_catalogo pc ON pc.id = p.procedimento_id "
+                            + "ORDER BY c.id, g.id, s.id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_STREAMING);
+            return ps;
+        }, rs -> {
+            consumidor.accept(new LinhaImportacao(0, ++linha[0], Objects.toString(rs.getString(1), ""),
+                    Objects.toString(rs.getString(2), ""), Objects.toString(rs.getString(3), ""),
+                    Objects.toString(rs.getString(4), "")));
+        });
+    }
+
+    /**
+     * Percorre o guia inteiro como linhas da junção clínica → grupo → subgrupo → procedimento (as
+     * mesmas de {@code ClinicaRepository#findLinhasArvore()}), ordenadas por clínica, grupo e
+     * subgrupo, com o mesmo cursor de avanço único de {@link #percorrerLinhas}. Enquanto o
+     * consumidor roda o resultado ainda está aberto, então ele não pode consultar o banco.
+     */
+    public void percorrerArvore(Consumer<LinhaArvoreClinica> consumidor) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT c.id, c.nome, c.endereco, c.municipio, c.telefone, c.email, g.id, g.nome, s.id, s.nome, pc.nome "
+                            + "FROM clinica c "
+                            + "LEFT JOIN grupo g ON g.clinica_id = c.id "
+                            + "LEFT JOIN subgrupo s ON s.grupo_id = g.id "
+                            + "LEFT JOIN procedimentos p ON p.subgrupo_id = s.id "
+                            + "LEFT JOIN procedimento_catalogo pc ON pc.id = p.procedimento_id "
+                            + "ORDER BY c.id, g.id, s.id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_STREAMING);
+            return ps;
+        }, rs -> {
+            consumidor.accept(new LinhaArvoreClinica(rs.getLong(1), rs.getString(2), rs.getString(3),
+                    rs.getString(4), rs.getString(5), rs.getString(6), rs.getObject(7, Long.class), rs.getString(8),
+                    rs.getObject(9, Long.class), rs.getString(10), rs.getString(11)));
+        });
+    }
+
+    /**
+     * Preenche as formas canônicas de linhas gravadas antes dessas colunas existirem.
+     * Não faz nada quando todas já estão preenchidas.
+     */
+    public void preencherFormasCanonicas() {
+        long total = 0;
+        total += preencherFormasCanonicas("SELECT id, nome, endereco, municipio FROM clinica WHERE nome_canonico IS NULL",
+                "UPDATE clinica SET nome_canonico = ?, endereco_canonico = ?, municipio_canonico = ? WHERE id = ?");
+        total += preencherFormasCanonicas("SELECT id, nome FROM grupo WHERE nome_canonico IS NULL",
+                "UPDATE grupo SET nome_canonico = ? WHERE id = ?");
+        total += preencherFormasCanonicas("SELECT id, nome FROM subgrupo WHERE nome_canonico IS NULL",
+                "UPDATE subgrupo SET nome_canonico = ? WHERE id = ?");
+        if (total > 0) {
+            log.info("Formas canônicas preenchidas para {} registros", total);
+        }
+    }
+
+    /**
+     * A primeira coluna da consulta é a chave do UPDATE; as demais são canonicalizadas, na mesma ordem.
+     */
+    private long preencherFormasCanonicas(String consulta, String atualizacao) {
+        List<Object[]> parametros = new ArrayList<>();
+        jdbcTemplate.query(consulta, rs -> {
+            int colunas = rs.getMetaData().getColumnCount();
+            Object[] linha = new Object[colunas];
+            for (int i = 2; i <= colunas; i++) {
+                linha[i - 2] = Canonicalizador.canonico(rs.getString(i));
+            }
+            linha[colunas - 1] = rs.getObject(1);
+            parametros.add(linha);
+        });
+        if (!parametros.isEmpty()) {
+            jdbcTemplate.batchUpdate(atualizacao, parametros);
+        }
+        return parametros.size();
+    }
+
+    /**
+     * Remove o guia inteiro com um DELETE por tabela, sem carregar entidades.
+     */
+    public void apagarTudo() {
+        jdbcTemplate.update("DELETE FROM procedimentos");
+        jdbcTemplate.update("DELETE FROM subgrupo");
+        jdbcTemplate.update("DELETE FROM grupo");
+        jdbcTemplate.update("DELETE FROM clinica");
+    }
+
+    private void descartarTabelas(String sufixo) {
+        // Filhos antes dos pais, por causa das chaves estrangeiras
+        for (int i = TABELAS.size() - 1; i >= 0; i--) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABELAS.get(i) + sufixo);
+        }
+    }
+
+    /**
+     * Os ids continuam a partir das tabelas vivas, para que um id nunca seja reutilizado
+     * por outra clínica entre versões do guia.
+     */
+    private IdsIniciais idsIniciais() {
+        return new IdsIniciais(maiorId("clinica") + 1, maiorId("grupo") + 1, maiorId("subgrupo") + 1);
+    }
+
+    private long maiorId(String tabela) {
+        Long id = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + tabela, Long.class);
+        return id != null ? id : 0L;
+    }
+
+    private void apagarPorIds(String tabela, String coluna, List<Long> ids, LongConsumer linhasGravadas) {
+        for (int inicio = 0; inicio < ids.size(); inicio += LINHAS_POR_INSERT) {
+            List<Long> lote = ids.subList(inicio, Math.min(ids.size(), inicio + LINHAS_POR_INSERT));
+            String sql = "DELETE FROM " + tabela + " WHERE " + coluna + " IN (" + "?, ".repeat(lote.size() - 1) + "?)";
+            linhasGravadas.accept(jdbcTemplate.update(sql, lote.toArray()));
+        }
+    }
+
+    private record IdsIniciais(long clinica, long grupo, long subgrupo) {
+    }
+
+    /**
+     * Clínica, grupo ou subgrupo como está gravado: só id, nome canônico, impressão e filhos.
+     */
+    private static final class NoGravado {
+        private final long id;
+        private final String chave;
+        private final Long impressao;
+        private final List<NoGravado> filhos = new ArrayList<>();
+        private boolean casado;
+
+        NoGravado(long id, String chave, Long impressao) {
+            this.id = id;
+            this.chave = chave;
+            this.impressao = impressao;
+        }
+    }
+
+    /**
+     * Acumula as escritas de uma importação incremental e as aplica na ordem segura para as chaves
+     * estrangeiras: DELETEs de filhos para pais, UPDATEs e por fim os INSERTs.
+     */
+    private final class Diferenca {
+        private final LongConsumer linhasGravadas;
+        private final Insercao insercao;
+        private final List<Object[]> atualizacoesClinica = new ArrayList<>();
+        private final List<Object[]> atualizacoesGrupo = new ArrayList<>();
+        private final List<Object[]> atualizacoesSubgrupo = new ArrayList<>();
+        private final List<Long> procedimentosSubstituidos = new ArrayList<>();
+        // Ids removidos por nível: clínica, grupo, subgrupo
+        private final List<List<Long>> removidos = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        private long linhas;
+        private long inalterados;
+        private long inseridos;
+        private long atualizados;
+
+        Diferenca(IdsIniciais ids, LongConsumer linhasGravadas) {
+            this.linhasGravadas = quantidade -> {
+                linhas += quantidade;
+                linhasGravadas.accept(quantidade);
+            };
+            this.insercao = new Insercao("", ids, this.linhasGravadas);
+        }
+
+        void remover(NoGravado no, int nivel) {
+            removidos.get(nivel).add(no.id);
+            for (NoGravado filho : no.filhos) {
+                remover(filho, nivel + 1);
+            }
+        }
+
+        DiferencaImportacao aplicar() {
+            List<Long> subgrupos = new ArrayList<>(removidos.get(2));
+            subgrupos.addAll(procedimentosSubstituidos);
+            apagarPorIds("procedimentos", "subgrupo_id", subgrupos, linhasGravadas);
+            apagarPorIds("subgrupo", "id", removidos.get(2), linhasGravadas);
+            apagarPorIds("grupo", "id", removidos.get(1), linhasGravadas);
+            apagarPorIds("clinica", "id", removidos.get(0), linhasGravadas);
+
+            atualizar("UPDATE clinica SET nome = ?, endereco = ?, municipio = ?, telefone = ?, email = ?, nome_canonico = ?, "
+                    + "endereco_canonico = ?, municipio_canonico = ?, impressao = ? WHERE id = ?", atualizacoesClinica);
+            atualizar("UPDATE grupo SET nome = ?, nome_canonico = ?, impressao = ? WHERE id = ?", atualizacoesGrupo);
+            atualizar("UPDATE subgrupo SET nome = ?, nome_canonico = ?, impressao = ? WHERE id = ?", atualizacoesSubgrupo);
+
+            insercao.finalizar();
+
+            return DiferencaImportacao.builder()
+                    .inalterados(inalterados)
+                    .inseridos(inseridos)
+                    .atualizados(atualizados)
+                    .removidos(removidos.get(0).size() + removidos.get(1).size() + removidos.get(2).size())
+                    .linhasGravadas(linhas)
+                    .build();
+        }
+
+        private void atualizar(String sql, List<Object[]> parametros) {
+            if (parametros.isEmpty()) {
+                return;
+            }
+            for (int[] lote : jdbcTemplate.batchUpdate(sql, parametros, LINHAS_POR_INSERT,
+                    (ps, linha) -> {
+                        for (int i = 0; i < linha.length; i++) {
+                            ps.setObject(i + 1, linha[i]);
+                        }
+                    })) {
+                linhasGravadas.accept(lote.length);
+            }
+        }
+    }
+
+    /**
+     * Grava subárvores novas com ids pré-alocados. Cada tabela tem seu lote, encadeado ao da tabela
+     * pai; os ids atribuídos são gravados nas entidades.
+     */
+    private final class Insercao {
+        private final LoteInsercao clinicas;
+        private final LoteInsercao grupos;
+        private final LoteInsercao subgrupos;
+        private final LoteInsercao procedimentos;
+        private long proximoIdClinica;
+        private long proximoIdGrupo;
+        private long proximoIdSubgrupo;
+
+        Insercao(String sufixo, IdsIniciais ids, LongConsumer linhasGravadas) {
+            this.proximoIdClinica = ids.clinica();
+            this.proximoIdGrupo = ids.grupo();
+            this.proximoIdSubgrupo = ids.subgrupo();
+            this.clinicas = new LoteInsercao(null, linhasGravadas, "clinica" + sufixo, "id", "nome", "endereco", "municipio",
+                    "telefone", "email", "nome_canonico", "endereco_canonico", "municipio_canonico", "impressao");
+            this.grupos = new LoteInsercao(clinicas, linhasGravadas, "grupo" + sufixo, "id", "nome", "clinica_id", "nome_canonico", "impressao");
+            this.subgrupos = new LoteInsercao(grupos, linhasGravadas, "subgrupo" + sufixo, "id", "nome", "grupo_id", "nome_canonico", "impressao");
+            this.procedimentos = new LoteInsercao(subgrupos, linhasGravadas, "procedimentos" + sufixo, "subgrupo_id", "procedimento_id");
+        }
+
+        void clinica(Clinica clinica) {
+            clinica.setId(proximoIdClinica++);
+            clinica.atualizarFormasCanonicas();
+            clinicas.adicionar(clinica.getId(), clinica.getNome(), clinica.getEndereco(), clinica.getMunicipio(),
+                    clinica.getTelefone(), clinica.getEmail(), clinica.getNomeCanonico(), clinica.getEnderecoCanonico(),
+                    clinica.getMunicipioCanonico(), clinica.getImpressao());
+            for (Grupo grupo : clinica.getGrupos()) {
+                grupo(grupo, clinica.getId());
+            }
+        }
+
+        void grupo(Grupo grupo, long clinicaId) {
+            grupo.setId(proximoIdGrupo++);
+            grupo.atualizarFormasCanonicas();
+            grupos.adicionar(grupo.getId(), grupo.getNome(), clinicaId, grupo.getNomeCanonico(), grupo.getImpressao());
+            for (Subgrupo subgrupo : grupo.getSubgrupos()) {
+                subgrupo(subgrupo, grupo.getId());
+            }
+        }
+
+        void subgrupo(Subgrupo subgrupo, long grupoId) {
+            subgrupo.setId(proximoIdSubgrupo++);
+            subgrupo.atualizarFormasCanonicas();
+            subgrupos.adicionar(subgrupo.getId(), subgrupo.getNome(), grupoId, subgrupo.getNomeCanonico(), subgrupo.getImpressao());
+            procedimentos(subgrupo);
+        }
+
+        void procedimentos(Subgrupo subgrupo) {
+            for (Procedimento procedimento : subgrupo.getProcedimentos()) {
+                procedimentos.adicionar(subgrupo.getId(), procedimento.getCatalogo().getId());
+            }
+        }
+
+        // Grava o restante; cada lote grava antes as linhas pendentes da tabela pai
+        void finalizar() {
+            procedimentos.finalizar();
+            log.debug("Carga em massa: {} clínicas, {} grupos, {} subgrupos, {} procedimentos",
+                    clinicas.total, grupos.total, subgrupos.total, procedimentos.total);
+        }
+    }
+
+    /**
+     * Acumula linhas de uma tabela e as grava em INSERTs de até {@link #LINHAS_POR_INSERT} linhas.
+     * Só o lote corrente fica em memória. Antes de gravar, o lote da tabela pai é descarregado
+     * para que as chaves estrangeiras já existam.
+     */
+    private final class LoteInsercao {
+        private final LoteInsercao pai;
+        private final LongConsumer aoGravar;
+        private final String prefixo;
+        private final int colunas;
+        private final Object[] valores;
+        private final String sqlLoteCheio;
+        private int linhas;
+        private long total;
+
+        LoteInsercao(LoteInsercao pai, LongConsumer aoGravar, String tabela, String... colunas) {
+            this.pai = pai;
+            this.aoGravar = aoGravar;
+            this.prefixo = "INSERT INTO " + tabela + " (" + String.join(", ", colunas) + ") VALUES ";
+            this.colunas = colunas.length;
+            this.valores = new Object[LINHAS_POR_INSERT * colunas.length];
+            this.sqlLoteCheio = sql(LINHAS_POR_INSERT);
+        }
+
+        void adicionar(Object... linha) {
+            System.arraycopy(linha, 0, valores, linhas * colunas, colunas);
+            linhas++;
+            if (linhas == LINHAS_POR_INSERT) {
+                gravar();
+            }
+        }
+
+        void finalizar() {
+            if (linhas > 0) {
+                gravar();
+            } else if (pai != null) {
+                pai.finalizar();
+            }
+        }
+
+        private void gravar() {
+            if (pai != null) {
+                pai.finalizar();
+            }
+            if (linhas == LINHAS_POR_INSERT) {
+                jdbcTemplate.update(sqlLoteCheio, valores);
+            } else {
+                jdbcTemplate.update(sql(linhas), Arrays.copyOf(valores, linhas * colunas));
+            }
+            total += linhas;
+            aoGravar.accept(linhas);
+            linhas = 0;
+        }
+
+        private String sql(int quantidadeLinhas) {
+            String linha = "(" + "?, ".repeat(colunas - 1) + "?)";
+            StringBuilder sql = new StringBuilder(prefixo.length() + quantidadeLinhas * (linha.length() + 2));
+            sql.append(prefixo);
+            for (int i = 0; i < quantidadeLinhas; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(linha);
+            }
+            return sql.toString();
+        }
+    }
+}
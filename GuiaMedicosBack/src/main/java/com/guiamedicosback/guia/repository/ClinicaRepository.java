@@ -1,11 +1,59 @@
 package com.guiamedicosback.guia.repository;
 
 import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Subgrupo;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface ClinicaRepository extends JpaRepository<Clinica, Long>, JpaSpecificationExecutor<Clinica> {
+
+    String LINHAS_ARVORE = "select new com.guiamedicosback.guia.repository.LinhaArvoreClinica("
+            + "c.id, c.nome, c.endereco, c.municipio, c.telefone, c.email, g.id, g.nome, s.id, s.nome, pc.nome) "
+            + "from Clinica c left join c.grupos g left join g.subgrupos s left join s.procedimentos p "
+            + "left join p.catalogo pc ";
+
     Clinica findByNome(String nome);
-}
\ No newline at end of file
+
+    /**
+     * Guia inteiro achatado numa única consulta, ordenado para que as linhas de cada clínica,
+     * grupo e subgrupo venham contíguas (ver {@code ClinicaMapper#toClinicaDTOs}).
+     */
+    @Query(LINHAS_ARVORE + "order by c.id, g.id, s.id")
+    List<LinhaArvoreClinica> findLinhasArvore();
+
+    @Query(LINHAS_ARVORE + "where c.id in :ids order by c.id, g.id, s.id")
+    List<LinhaArvoreClinica> findLinhasArvore(@Param("ids") Collection<Long> ids);
+
+    @Query("select c from Clinica c left join fetch c.grupos")
+    List<Clinica> findAllComGrupos();
+
+    @Query("select g from Grupo g left join fetch g.subgrupos")
+    List<Grupo> findAllGruposComSubgrupos();
+
+    @Query("select s from Subgrupo s left join fetch s.procedimentos p left join fetch p.catalogo")
+    List<Subgrupo> findAllSubgruposComProcedimentos();
+
+    /**
+     * Carrega o guia inteiro (clínicas, grupos, subgrupos e procedimentos) com três consultas,
+     * independente do tamanho, em vez de inicializar cada coleção sob demanda.
+     * <p>
+     * Cada consulta busca uma única coleção com join fetch, para não gerar o produto cartesiano
+     * dos níveis. As três precisam rodar no mesmo contexto de persistência (dentro de uma transação):
+     * as instâncias carregadas por uma consulta são as mesmas que as seguintes completam, e as
+     * associações {@code @ManyToOne} para o pai já estão no contexto.
+     */
+    default List<Clinica> carregarGuiaCompleto() {
+        List<Clinica> clinicas = findAllComGrupos();
+        findAllGruposComSubgrupos();
+        findAllSubgruposComProcedimentos();
+        return clinicas;
+    }
+}
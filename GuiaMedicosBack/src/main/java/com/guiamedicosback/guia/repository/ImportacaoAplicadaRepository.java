@@ -0,0 +1,10 @@
+package com.guiamedicosback.guia.repository;
+
+import com.guiamedicosback.guia.entity.ImportacaoAplicada;
+import com.guiamedicosback.guia.service.importacao.TipoImportacao;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImportacaoAplicadaRepository extends JpaRepository<ImportacaoAplicada, TipoImportacao> {
+}
@@ -0,0 +1,20 @@
+package com.guiamedicosback.guia.repository;
+
+/**
+ * Uma linha da junção clínica → grupo → subgrupo → procedimento, lida por projeção, sem entidades
+ * gerenciadas. Os campos de um nível sem filhos vêm nulos ({@code left join}).
+ */
+public record LinhaArvoreClinica(
+        Long clinicaId,
+        String nome,
+        String endereco,
+        String municipio,
+        String telefone,
+        String email,
+        Long grupoId,
+        String grupo,
+        Long subgrupoId,
+        String subgrupo,
+        String procedimento
+) {
+}
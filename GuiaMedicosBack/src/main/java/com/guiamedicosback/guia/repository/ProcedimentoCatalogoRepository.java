@@ -0,0 +1,200 @@
+package com.guiamedicosback.guia.repository;
+
+import com.guiamedicosback.guia.entity.Procedimento;
+import com.guiamedicosback.guia.entity.ProcedimentoCatalogo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitura e gravação do catálogo de procedimentos via JDBC. Também migra a tabela
+ * {@code procedimentos} dos formatos antigos, em que cada linha guardava o nome do procedimento.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProcedimentoCatalogoRepository {
+
+    private static final int LINHAS_POR_INSERT = ClinicaBulkRepository.LINHAS_POR_INSERT;
+    private static final String INDICE_NOME_CANONICO = "idx_procedimento_catalogo_nome_canonico";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<ProcedimentoCatalogo> carregar() {
+        return jdbcTemplate.query("SELECT id, nome, nome_canonico, especializacao FROM procedimento_catalogo",
+                (rs, _) -> new ProcedimentoCatalogo(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+    }
+
+    /**
+     * Entradas já gravadas com essas formas canônicas.
+     */
+    public List<ProcedimentoCatalogo> porNomesCanonicos(List<String> nomesCanonicos) {
+        List<ProcedimentoCatalogo> entradas = new ArrayList<>();
+        for (int inicio = 0; inicio < nomesCanonicos.size(); inicio += LINHAS_POR_INSERT) {
+            List<String> lote = nomesCanonicos.subList(inicio, Math.min(nomesCanonicos.size(), inicio + LINHAS_POR_INSERT));
+            entradas.addAll(jdbcTemplate.query("SELECT id, nome, nome_canonico, especializacao FROM procedimento_catalogo "
+                            + "WHERE nome_canonico IN (" + "?, ".repeat(lote.size() - 1) + "?) ORDER BY id",
+                    (rs, _) -> new ProcedimentoCatalogo(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)),
+                    lote.toArray()));
+        }
+        return entradas;
+    }
+
+    public int maiorId() {
+        Integer id = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM procedimento_catalogo", Integer.class);
+        return id != null ? id : 0;
+    }
+
+    /**
+     * Grava entradas com ids já atribuídos, em INSERTs de múltiplas linhas.
+     */
+    public void inserir(List<ProcedimentoCatalogo> entradas) {
+        for (int inicio = 0; inicio < entradas.size(); inicio += LINHAS_POR_INSERT) {
+            List<ProcedimentoCatalogo> lote = entradas.subList(inicio, Math.min(entradas.size(), inicio + LINHAS_POR_INSERT));
+            List<Object> valores = new ArrayList<>(lote.size() * 4);
+            for (ProcedimentoCatalogo entrada : lote) {
+                valores.add(entrada.getId());
+                valores.add(entrada.getNome());
+                valores.add(entrada.getNomeCanonico());
+                valores.add(entrada.getEspecializacao());
+            }
+            jdbcTemplate.update("INSERT INTO procedimento_catalogo (id, nome, nome_canonico, especializacao) VALUES "
+                    + "(?, ?, ?, ?), ".repeat(lote.size() - 1) + "(?, ?, ?, ?)", valores.toArray());
+        }
+    }
+
+    /**
+     * Colunas de formatos antigos ainda presentes em {@code procedimentos}: {@code nome} e
+     * {@code especializacao} (procedimento embutido com o nome) e {@code procedimento} e
+     * {@code nome_canonico} (nome com a forma canônica), na ordem de {@link ColunaAntiga}.
+     */
+    public EnumSet<ColunaAntiga> colunasAntigas() {
+        EnumSet<ColunaAntiga> presentes = EnumSet.noneOf(ColunaAntiga.class);
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (ResultSet rs = con.getMetaData().getColumns(con.getCatalog(), null, "procedimentos", null)) {
+                while (rs.next()) {
+                    for (ColunaAntiga coluna : ColunaAntiga.values()) {
+                        if (coluna.nome.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                            presentes.add(coluna);
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+        return presentes;
+    }
+
+    /**
+     * Se o índice de {@code nome_canonico} existe e ainda é do formato antigo, sem unicidade.
+     * O {@code ddl-auto} cria o índice novo já único, mas não altera um índice existente.
+     */
+    public boolean indiceNomeCanonicoNaoUnico() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            try (ResultSet rs = con.getMetaData().getIndexInfo(con.getCatalog(), null, "procedimento_catalogo", false, false)) {
+                while (rs.next()) {
+                    if (INDICE_NOME_CANONICO.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return rs.getBoolean("NON_UNIQUE");
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+
+    /**
+     * Formas canônicas com mais de uma entrada no catálogo.
+     */
+    public long nomesCanonicosRepetidos() {
+        Long repetidos = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT nome_canonico FROM procedimento_catalogo "
+                + "GROUP BY nome_canonico HAVING COUNT(*) > 1) repetidos", Long.class);
+        return repetidos != null ? repetidos : 0;
+    }
+
+    /**
+     * Troca o índice de {@code nome_canonico} por um índice único, numa só instrução.
+     */
+    public void tornarIndiceNomeCanonicoUnico() {
+        jdbcTemplate.execute("ALTER TABLE procedimento_catalogo DROP INDEX " + INDICE_NOME_CANONICO
+                + ", ADD UNIQUE INDEX " + INDICE_NOME_CANONICO + " (nome_canonico)");
+    }
+
+    /**
+     * Nome e especialização de cada linha ainda sem entrada no catálogo, sem repetições.
+     */
+    public List<Procedimento> semCatalogo(EnumSet<ColunaAntiga> colunas) {
+        String especializacao = colunas.contains(ColunaAntiga.ESPECIALIZACAO) ? "especializacao" : "NULL";
+        return jdbcTemplate.query("SELECT DISTINCT " + expressaoNome(colunas) + ", " + especializacao
+                        + " FROM procedimentos WHERE procedimento_id IS NULL AND " + expressaoNome(colunas) + " IS NOT NULL",
+                (rs, _) -> new Procedimento(rs.getString(2), rs.getString(1)));
+    }
+
+    /**
+     * Aponta as linhas dos formatos antigos para o catálogo, pelo nome gravado em cada uma.
+     */
+    public void vincular(EnumSet<ColunaAntiga> colunas, Map<String, Integer> idPorNome) {
+        List<Object[]> parametros = new ArrayList<>(idPorNome.size());
+        idPorNome.forEach((nome, id) -> parametros.add(new Object[]{id, nome}));
+        jdbcTemplate.batchUpdate("UPDATE procedimentos SET procedimento_id = ? "
+                + "WHERE procedimento_id IS NULL AND " + expressaoNome(colunas) + " = ?", parametros);
+    }
+
+    /**
+     * Linhas dos formatos antigos com nome mas ainda sem entrada no catálogo.
+     */
+    public long pendentes(EnumSet<ColunaAntiga> colunas) {
+        Long pendentes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM procedimentos "
+                + "WHERE procedimento_id IS NULL AND " + expressaoNome(colunas) + " IS NOT NULL", Long.class);
+        return pendentes != null ? pendentes : 0;
+    }
+
+    /**
+     * Remove as colunas dos formatos antigos. Irreversível: só deve ser chamado sem linhas pendentes.
+     */
+    public void descartar(EnumSet<ColunaAntiga> colunas) {
+        List<String> drops = new ArrayList<>();
+        for (ColunaAntiga coluna : colunas) {
+            drops.add("DROP COLUMN " + coluna.nome);
+        }
+        jdbcTemplate.execute("ALTER TABLE procedimentos " + String.join(", ", drops));
+    }
+
+    // As colunas vêm de ColunaAntiga, nunca de entrada externa
+    private static String expressaoNome(EnumSet<ColunaAntiga> colunas) {
+        boolean procedimento = colunas.contains(ColunaAntiga.PROCEDIMENTO);
+        boolean nome = colunas.contains(ColunaAntiga.NOME);
+        if (procedimento && nome) {
+            return "COALESCE(procedimento, nome)";
+        }
+        return procedimento ? "procedimento" : "nome";
+    }
+
+    /**
+     * Colunas de {@code procedimentos} anteriores ao catálogo.
+     */
+    public enum ColunaAntiga {
+        NOME("nome"),
+        ESPECIALIZACAO("especializacao"),
+        PROCEDIMENTO("procedimento"),
+        NOME_CANONICO("nome_canonico");
+
+        private final String nome;
+
+        ColunaAntiga(String nome) {
+            this.nome = nome;
+        }
+
+        /**
+         * Se há alguma coluna com o nome do procedimento a migrar.
+         */
+        public static boolean comNome(EnumSet<ColunaAntiga> colunas) {
+            return colunas.contains(NOME) || colunas.contains(PROCEDIMENTO);
+        }
+    }
+}
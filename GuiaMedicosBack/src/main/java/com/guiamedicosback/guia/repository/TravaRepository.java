@@ -0,0 +1,109 @@
+package com.guiamedicosback.guia.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Travas nomeadas do MySQL ({@code GET_LOCK}/{@code RELEASE_LOCK}), que valem entre todas as
+ * instâncias da aplicação ligadas ao mesmo banco.
+ * <p>
+ * A trava pertence à sessão que a obteve, então é mantida numa conexão própria, separada da usada
+ * pelo trabalho protegido: a ação roda (e faz commit) com a trava obtida, e ela só é liberada
+ * depois. Se a aplicação cair, o MySQL libera a trava junto com a conexão.
+ * <p>
+ * Fechar a conexão só a devolve ao pool, com a sessão (e a trava) ainda aberta: se o
+ * {@code RELEASE_LOCK} falha, a conexão é descartada do pool para que o MySQL encerre a sessão.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class TravaRepository {
+
+    /**
+     * Escritas nas tabelas do guia: importações e edições manuais. Serializa a pré-alocação de ids
+     * da carga em massa com os INSERTs com IDENTITY das edições.
+     */
+    public static final String ESCRITA_GUIA = "escrita_guia";
+
+    /**
+     * Criação de entradas do catálogo de procedimentos (leitura do maior id e INSERT).
+     */
+    public static final String CATALOGO_PROCEDIMENTOS = "catalogo_procedimentos";
+
+    private final DataSource dataSource;
+
+    /**
+     * Executa a ação com a trava obtida, esperando por ela até {@code espera}.
+     *
+     * @throws CannotAcquireLockException se a trava não é obtida dentro da espera
+     */
+    public <T> T comTrava(String nome, Duration espera, Supplier<T> acao) {
+        try (Connection conexao = dataSource.getConnection()) {
+            // O nome vale para o servidor inteiro: o schema entra no nome para não misturar bancos
+            if (!obter(conexao, nome, espera)) {
+                throw new CannotAcquireLockException("Trava '" + nome + "' ocupada por outra escrita há mais de "
+                        + espera.toSeconds() + " s");
+            }
+            try {
+                return acao.get();
+            } finally {
+                liberar(conexao, nome);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Erro ao usar a trava '" + nome + "'", e);
+        }
+    }
+
+    public void comTrava(String nome, Duration espera, Runnable acao) {
+        comTrava(nome, espera, () -> {
+            acao.run();
+            return null;
+        });
+    }
+
+    private static boolean obter(Connection conexao, String nome, Duration espera) throws SQLException {
+        try (PreparedStatement ps = conexao.prepareStatement("SELECT GET_LOCK(CONCAT(DATABASE(), '.', ?), ?)")) {
+            ps.setString(1, nome);
+            ps.setLong(2, espera.toSeconds());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void liberar(Connection conexao, String nome) {
+        try (PreparedStatement ps = conexao.prepareStatement("SELECT RELEASE_LOCK(CONCAT(DATABASE(), '.', ?))")) {
+            ps.setString(1, nome);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            log.warn("Não foi possível liberar a trava '{}': a conexão será descartada", nome, e);
+            descartar(conexao);
+        }
+    }
+
+    // Tira a conexão do pool: o close() que vem em seguida fecha a conexão física, e o MySQL
+    // libera as travas da sessão
+    private void descartar(Connection conexao) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                dataSource.unwrap(HikariDataSource.class).evictConnection(conexao);
+            } else {
+                conexao.abort(Runnable::run);
+            }
+        } catch (SQLException e) {
+            log.error("Não foi possível descartar a conexão que mantém a trava", e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.guiamedicosback.guia.service;
+
+import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Procedimento;
+import com.guiamedicosback.guia.entity.ProcedimentoCatalogo;
+import com.guiamedicosback.guia.entity.Subgrupo;
+import com.guiamedicosback.guia.repository.ProcedimentoCatalogoRepository;
+import com.guiamedicosback.guia.repository.ProcedimentoCatalogoRepository.ColunaAntiga;
+import com.guiamedicosback.guia.repository.TravaRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catálogo de procedimentos em memória: forma canônica do nome → entrada do
+ * {@link ProcedimentoCatalogo}, carregado do banco no primeiro uso.
+ * <p>
+ * Importações e edições passam a árvore por {@link #resolver(Collection)} antes de gravar: cada
+ * procedimento é associado à entrada do seu nome, e os nomes novos ganham entradas. As entradas
+ * novas são gravadas numa transação própria, confirmada antes da transação de quem chamou, para
+ * que o mapa em memória nunca aponte para um id que não existe no banco. Uma entrada sem
+ * procedimentos (quando a gravação de quem chamou falha) não atrapalha nada.
+ */
+@Slf4j
+@Component
+public class CatalogoProcedimentos {
+
+    // Registrar nomes novos é rápido: a espera só cobre outra instância fazendo o mesmo
+    private static final Duration ESPERA_TRAVA = Duration.ofSeconds(30);
+
+    private final ProcedimentoCatalogoRepository repository;
+    private final TransactionTemplate novaTransacao;
+    private final TravaRepository travaRepository;
+    private final boolean descartarColunasAntigas;
+
+    private volatile Map<String, ProcedimentoCatalogo> porNome;
+
+    public CatalogoProcedimentos(ProcedimentoCatalogoRepository repository,
+                                 PlatformTransactionManager transactionManager,
+                                 TravaRepository travaRepository,
+                                 @Value("${guia.catalogo.descartar-colunas-antigas:false}") boolean descartarColunasAntigas) {
+        this.repository = repository;
+        this.novaTransacao = new TransactionTemplate(transactionManager);
+        this.novaTransacao.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.travaRepository = travaRepository;
+        this.descartarColunasAntigas = descartarColunasAntigas;
+    }
+
+    /**
+     * Bancos gravados antes do catálogo guardam o nome em cada linha de {@code procedimentos}:
+     * cria as entradas desses nomes e aponta as linhas para elas. Roda na criação do bean, antes
+     * de o modelo de leitura ler o guia e de a aplicação atender requisições, para que nenhuma
+     * linha ainda sem entrada suma das respostas.
+     * <p>
+     * As colunas antigas são mantidas, a menos que {@code guia.catalogo.descartar-colunas-antigas}
+     * esteja ligado e todas as linhas com nome já apontem para o catálogo.
+     */
+    @PostConstruct
+    public void migrarFormatoAntigo() {
+        tornarIndiceUnico();
+        try {
+            EnumSet<ColunaAntiga> colunas = repository.colunasAntigas();
+            if (!ColunaAntiga.comNome(colunas)) {
+                return;
+            }
+            List<Procedimento> procedimentos = repository.semCatalogo(colunas);
+            if (!procedimentos.isEmpty()) {
+                Map<String, ProcedimentoCatalogo> entradas = registrar(procedimentos);
+                Map<String, Integer> idPorNome = new HashMap<>(procedimentos.size() * 2);
+                for (Procedimento procedimento : procedimentos) {
+                    idPorNome.put(procedimento.getNome(), entradas.get(procedimento.getNomeCanonico()).getId());
+                }
+                novaTransacao.executeWithoutResult(_ -> repository.vincular(colunas, idPorNome));
+                log.info("Procedimentos migrados para o catálogo: {} nomes", idPorNome.size());
+            }
+            if (descartarColunasAntigas) {
+                long pendentes = repository.pendentes(colunas);
+                if (pendentes == 0) {
+                    repository.descartar(colunas);
+                    log.info("Colunas antigas de procedimentos removidas: {}", colunas);
+                } else {
+                    log.warn("Colunas antigas de procedimentos mantidas: {} linhas ainda sem entrada no catálogo", pendentes);
+                }
+            }
+        } catch (Exception e) {
+            // As colunas antigas ficam intactas: a migração é refeita na próxima inicialização
+            log.error("Não foi possível migrar os procedimentos para o catálogo: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Bancos criados antes do índice único de {@code nome_canonico} têm um índice comum com o
+     * mesmo nome: troca-o pelo único, a menos que já haja formas canônicas repetidas, que
+     * precisam ser corrigidas à mão.
+     */
+    private void tornarIndiceUnico() {
+        try {
+            if (!repository.indiceNomeCanonicoNaoUnico()) {
+                return;
+            }
+            long repetidos = repository.nomesCanonicosRepetidos();
+            if (repetidos == 0) {
+                repository.tornarIndiceNomeCanonicoUnico();
+                log.info("Índice de nome canônico do catálogo de procedimentos passou a ser único");
+            } else {
+                log.error("Índice de nome canônico do catálogo mantido sem unicidade: {} nomes com mais de uma entrada", repetidos);
+            }
+        } catch (Exception e) {
+            log.error("Não foi possível tornar único o índice do catálogo de procedimentos: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Id no catálogo do procedimento com esta forma canônica, ou {@code null} se nenhum
+     * procedimento tem esse nome.
+     */
+    public Integer id(String nomeCanonico) {
+        ProcedimentoCatalogo entrada = mapa().get(nomeCanonico);
+        return entrada != null ? entrada.getId() : null;
+    }
+
+    /**
+     * Associa cada procedimento das clínicas à entrada do catálogo com o mesmo nome canônico,
+     * criando as que faltam. Procedimentos sem nome são descartados.
+     */
+    public void resolver(Collection<Clinica> clinicas) {
+        List<Procedimento> pendentes = new ArrayList<>();
+        for (Clinica clinica : clinicas) {
+            for (Grupo grupo : clinica.getGrupos()) {
+                for (Subgrupo subgrupo : grupo.getSubgrupos()) {
+                    subgrupo.getProcedimentos().removeIf(p -> p.getNomeCanonico().isEmpty());
+                    for (Procedimento procedimento : subgrupo.getProcedimentos()) {
+                        if (procedimento.getCatalogo() == null) {
+                            pendentes.add(procedimento);
+                        }
+                    }
+                }
+            }
+        }
+        if (pendentes.isEmpty()) {
+            return;
+        }
+        Map<String, ProcedimentoCatalogo> entradas = registrar(pendentes);
+        for (Procedimento procedimento : pendentes) {
+            procedimento.setCatalogo(entradas.get(procedimento.getNomeCanonico()));
+        }
+    }
+
+    /**
+     * Entradas para os procedimentos informados, gravando as que ainda não existem. O nome da
+     * entrada é a primeira grafia encontrada de cada forma canônica; a especialização, a primeira
+     * informada para ela. Entradas existentes não são alteradas.
+     * <p>
+     * Os ids novos partem do maior id gravado, sob a trava {@link TravaRepository#CATALOGO_PROCEDIMENTOS}:
+     * outra instância da aplicação pode estar registrando os mesmos nomes, então sob a trava os
+     * nomes que faltam no mapa são procurados de novo no banco, e a transação dos INSERTs é
+     * confirmada antes de a trava ser liberada.
+     */
+    private Map<String, ProcedimentoCatalogo> registrar(Collection<Procedimento> procedimentos) {
+        Map<String, ProcedimentoCatalogo> atual = mapa();
+        Map<String, Procedimento> novos = new LinkedHashMap<>();
+        Map<String, String> especializacoes = new HashMap<>();
+        for (Procedimento procedimento : procedimentos) {
+            String chave = procedimento.getNomeCanonico();
+            if (!atual.containsKey(chave)) {
+                novos.putIfAbsent(chave, procedimento);
+                if (procedimento.getEspecializacao() != null) {
+                    especializacoes.putIfAbsent(chave, procedimento.getEspecializacao());
+                }
+            }
+        }
+        if (novos.isEmpty()) {
+            return atual;
+        }
+        List<ProcedimentoCatalogo> gravadas = travaRepository.comTrava(TravaRepository.CATALOGO_PROCEDIMENTOS,
+                ESPERA_TRAVA, () -> novaTransacao.execute(_ -> {
+                    List<ProcedimentoCatalogo> entradas = new ArrayList<>(
+                            repository.porNomesCanonicos(new ArrayList<>(novos.keySet())));
+                    for (ProcedimentoCatalogo existente : entradas) {
+                        novos.remove(existente.getNomeCanonico());
+                    }
+                    int proximoId = repository.maiorId() + 1;
+                    List<ProcedimentoCatalogo> criadas = new ArrayList<>(novos.size());
+                    for (Map.Entry<String, Procedimento> novo : novos.entrySet()) {
+                        criadas.add(new ProcedimentoCatalogo(proximoId++, novo.getValue().getNome().strip(), novo.getKey(),
+                                especializacoes.get(novo.getKey())));
+                    }
+                    repository.inserir(criadas);
+                    log.debug("Catálogo de procedimentos: {} entradas novas", criadas.size());
+                    entradas.addAll(criadas);
+                    return entradas;
+                }));
+        for (ProcedimentoCatalogo entrada : gravadas) {
+            atual.putIfAbsent(entrada.getNomeCanonico(), entrada);
+        }
+        return atual;
+    }
+
+    private Map<String, ProcedimentoCatalogo> mapa() {
+        Map<String, ProcedimentoCatalogo> atual = porNome;
+        if (atual != null) {
+            return atual;
+        }
+        synchronized (this) {
+            if (porNome == null) {
+                Map<String, ProcedimentoCatalogo> carregado = new ConcurrentHashMap<>();
+                for (ProcedimentoCatalogo entrada : repository.carregar()) {
+                    carregado.putIfAbsent(entrada.getNomeCanonico(), entrada);
+                }
+                porNome = carregado;
+            }
+            return porNome;
+        }
+    }
+}
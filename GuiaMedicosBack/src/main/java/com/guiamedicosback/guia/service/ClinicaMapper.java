@@ -2,12 +2,17 @@ package com.guiamedicosback.guia.service;
 
 import com.guiamedicosback.guia.entity.Clinica;
 import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Procedimento;
 import com.guiamedicosback.guia.entity.Subgrupo;
 import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
 import com.guiamedicosback.guia.entity.dto.GrupoDTO;
 import com.guiamedicosback.guia.entity.dto.SubgrupoDTO;
+import com.guiamedicosback.guia.repository.LinhaArvoreClinica;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
@@ -31,6 +36,84 @@ public class ClinicaMapper {
                 .build();
     }
 
+    /**
+     * Monta as árvores de DTOs a partir das linhas achatadas da junção, que precisam vir ordenadas
+     * por clínica, grupo e subgrupo. Cada nível começa quando o id muda em relação à linha anterior.
+     */
+    public List<ClinicaDTO> toClinicaDTOs(List<LinhaArvoreClinica> linhas) {
+        List<ClinicaDTO> clinicas = new ArrayList<>();
+        MontadorClinicas montador = new MontadorClinicas(clinicas::add);
+        linhas.forEach(montador);
+        montador.finalizar();
+        return clinicas;
+    }
+
+    /**
+     * Versão incremental de {@link #toClinicaDTOs}: recebe as linhas uma a uma, na mesma ordem, e
+     * entrega cada clínica ao consumidor assim que chega a linha de outra. Só a clínica corrente
+     * fica em memória.
+     */
+    public static final class MontadorClinicas implements Consumer<LinhaArvoreClinica> {
+        private final Consumer<ClinicaDTO> consumidor;
+        private ClinicaDTO clinica;
+        private Long grupoAtual;
+        private Long subgrupoAtual;
+        private List<SubgrupoDTO> subgrupos;
+        private List<String> procedimentos;
+
+        public MontadorClinicas(Consumer<ClinicaDTO> consumidor) {
+            this.consumidor = consumidor;
+        }
+
+        @Override
+        public void accept(LinhaArvoreClinica linha) {
+            if (clinica == null || !linha.clinicaId().equals(clinica.id())) {
+                finalizar();
+                grupoAtual = null;
+                subgrupoAtual = null;
+                clinica = ClinicaDTO.builder()
+                        .id(linha.clinicaId())
+                        .nome(linha.nome())
+                        .endereco(linha.endereco())
+                        .municipio(linha.municipio())
+                        .telefone(linha.telefone())
+                        .email(linha.email())
+                        .grupos(new ArrayList<>())
+                        .build();
+            }
+            if (linha.grupoId() == null) {
+                return;
+            }
+            if (!linha.grupoId().equals(grupoAtual)) {
+                grupoAtual = linha.grupoId();
+                subgrupoAtual = null;
+                subgrupos = new ArrayList<>();
+                clinica.grupos().add(GrupoDTO.builder().nome(linha.grupo()).subgrupos(subgrupos).build());
+            }
+            if (linha.subgrupoId() == null) {
+                return;
+            }
+            if (!linha.subgrupoId().equals(subgrupoAtual)) {
+                subgrupoAtual = linha.subgrupoId();
+                procedimentos = new ArrayList<>();
+                subgrupos.add(SubgrupoDTO.builder().nome(linha.subgrupo()).procedimentos(procedimentos).build());
+            }
+            if (linha.procedimento() != null) {
+                procedimentos.add(linha.procedimento());
+            }
+        }
+
+        /**
+         * Entrega a clínica em montagem, se houver. Chamado depois da última linha.
+         */
+        public void finalizar() {
+            if (clinica != null) {
+                consumidor.accept(clinica);
+                clinica = null;
+            }
+        }
+    }
+
     public GrupoDTO toGrupoDTO(Grupo grupo) {
         if (grupo == null) {
             return null;
@@ -50,7 +133,9 @@ public class ClinicaMapper {
 
         return SubgrupoDTO.builder()
                 .nome(subgrupo.getNome())
-                .procedimentos(subgrupo.getProcedimentos())
+                .procedimentos(subgrupo.getProcedimentos().stream()
+                        .map(Procedimento::getNome)
+                        .collect(Collectors.toList()))
                 .build();
     }
 
@@ -79,7 +164,7 @@ public class ClinicaMapper {
                     for (SubgrupoDTO subgrupoDTO : grupoDTO.subgrupos()) {
                         Subgrupo subgrupo = new Subgrupo();
                         subgrupo.setNome(subgrupoDTO.nome());
-                        subgrupo.setProcedimentos(subgrupoDTO.procedimentos());
+                        subgrupo.setProcedimentos(toProcedimentos(subgrupoDTO.procedimentos()));
                         subgrupo.setGrupo(grupo);
                         grupo.getSubgrupos().add(subgrupo);
                     }
@@ -91,4 +176,14 @@ public class ClinicaMapper {
 
         return clinica;
     }
-}
\ No newline at end of file
+
+    public List<Procedimento> toProcedimentos(List<String> nomes) {
+        List<Procedimento> procedimentos = new ArrayList<>();
+        if (nomes != null) {
+            for (String nome : nomes) {
+                procedimentos.add(new Procedimento(nome));
+            }
+        }
+        return procedimentos;
+    }
+}
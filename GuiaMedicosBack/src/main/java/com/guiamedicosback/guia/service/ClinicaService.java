@@ -1,18 +1,42 @@
 package com.guiamedicosback.guia.service;
 
 import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
-import org.springframework.web.multipart.MultipartFile;
+import com.guiamedicosback.guia.entity.dto.PaginaClinicasDTO;
+import com.guiamedicosback.guia.entity.dto.ResultadoImportacao;
+import com.guiamedicosback.guia.entity.dto.SugestaoDTO;
+import com.guiamedicosback.guia.service.busca.CampoSugestao;
+import com.guiamedicosback.guia.service.busca.ConsultaBooleana;
+import com.guiamedicosback.guia.service.busca.OrdenacaoClinicas;
+import com.guiamedicosback.guia.service.busca.RespostaJson;
+import com.guiamedicosback.guia.service.importacao.ModoImportacao;
+import com.guiamedicosback.guia.service.importacao.ProgressoImportacao;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
 public interface ClinicaService {
-    void addClinicaFromFile(MultipartFile file) throws IOException;
+    ResultadoImportacao addClinicaFromFile(Path arquivo, ModoImportacao modo, ProgressoImportacao progresso) throws IOException;
     ClinicaDTO addClinica(ClinicaDTO clinicaDTO);
     void deleteClinica(Long id);
     ClinicaDTO updateClinica(Long id, ClinicaDTO clinicaDTO);
     ClinicaDTO getClinicaById(Long id);
     List<ClinicaDTO> getClinicas();
+    Optional<RespostaJson> getClinicasSerializadas();
+    Optional<RespostaJson> getClinicaSerializada(Long id);
+    void streamClinicas(OutputStream saida) throws IOException;
     List<ClinicaDTO> searchClinicas(String nome, String municipio, String endereco,
-                                    String procedimento, String grupo, String subgrupo);
+                                    String procedimento, String grupo, String subgrupo, String q,
+                                    ConsultaBooleana termos);
+    PaginaClinicasDTO getClinicas(OrdenacaoClinicas ordenacao, String cursor, int limite);
+    PaginaClinicasDTO searchClinicas(String nome, String municipio, String endereco,
+                                     String procedimento, String grupo, String subgrupo, String q,
+                                     ConsultaBooleana termos, OrdenacaoClinicas ordenacao, String cursor, int limite);
+    PaginaClinicasDTO searchClinicasComFacetas(String nome, String municipio, String endereco,
+                                               String procedimento, String grupo, String subgrupo, String q,
+                                               ConsultaBooleana termos, OrdenacaoClinicas ordenacao,
+                                               String cursor, Integer limite);
+    List<SugestaoDTO> getSugestoes(CampoSugestao campo, String prefixo, int limite);
 }
\ No newline at end of file
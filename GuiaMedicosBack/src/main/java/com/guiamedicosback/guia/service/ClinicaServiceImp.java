@@ -2,43 +2,162 @@ package com.guiamedicosback.guia.service;
 
 import com.guiamedicosback.guia.entity.Clinica;
 import com.guiamedicosback.guia.entity.Grupo;
-import com.guiamedicosback.guia.entity.Subgrupo;
 import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
+import com.guiamedicosback.guia.entity.dto.DiferencaImportacao;
+import com.guiamedicosback.guia.entity.dto.PaginaClinicasDTO;
+import com.guiamedicosback.guia.entity.dto.ResultadoImportacao;
+import com.guiamedicosback.guia.entity.dto.SugestaoDTO;
+import com.guiamedicosback.guia.repository.ClinicaBulkRepository;
 import com.guiamedicosback.guia.repository.ClinicaRepository;
-import jakarta.persistence.criteria.Join;
-import jakarta.transaction.Transactional;
+import com.guiamedicosback.guia.repository.ImportacaoAplicadaRepository;
+import com.guiamedicosback.guia.repository.TravaRepository;
+import com.guiamedicosback.guia.service.busca.CampoSugestao;
+import com.guiamedicosback.guia.service.busca.CompiladorBusca;
+import com.guiamedicosback.guia.service.busca.ConsultaBooleana;
+import com.guiamedicosback.guia.service.busca.CursorClinicas;
+import com.guiamedicosback.guia.service.busca.FiltrosBusca;
+import com.guiamedicosback.guia.service.busca.GuiaAtualizadaEvent;
+import com.guiamedicosback.guia.service.busca.ModeloLeituraGuia;
+import com.guiamedicosback.guia.service.busca.ModeloLeituraIndisponivelException;
+import com.guiamedicosback.guia.service.busca.OrdenacaoClinicas;
+import com.guiamedicosback.guia.service.busca.RespostaJson;
+import com.guiamedicosback.guia.service.busca.SnapshotGuia;
+import com.guiamedicosback.guia.service.importacao.FaseImportacao;
+import com.guiamedicosback.guia.service.importacao.ImpressaoDigital;
+import com.guiamedicosback.guia.service.importacao.ModoImportacao;
+import com.guiamedicosback.guia.service.importacao.ProgressoImportacao;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ClinicaServiceImp implements ClinicaService {
     private final ClinicaRepository clinicaRepository;
+    private final ClinicaBulkRepository clinicaBulkRepository;
+    private final ImportacaoAplicadaRepository importacaoAplicadaRepository;
     private final ExcelProcessorService processorService;
     private final ClinicaMapper clinicaMapper;
+    private final CatalogoProcedimentos catalogoProcedimentos;
+    private final TravaRepository travaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ModeloLeituraGuia modeloLeitura;
+    private final ApplicationEventPublisher eventos;
 
-    @Override
-    @Transactional
-    public void addClinicaFromFile(MultipartFile file) throws IOException {
-        if (file.isEmpty()) {
-            return;
+    // Maior página aceita pela listagem e pela busca paginadas
+    static final int LIMITE_MAXIMO_PAGINA = 500;
+
+    // Maior número de sugestões por requisição
+    static final int LIMITE_MAXIMO_SUGESTOES = 50;
+
+    // Quanto uma importação espera pela trava de escrita: outra importação pode estar gravando
+    private static final Duration ESPERA_IMPORTACAO = Duration.ofMinutes(10);
+
+    // Quanto uma edição manual espera antes de desistir: durante uma importação responde 409
+    private static final Duration ESPERA_EDICAO = Duration.ofSeconds(10);
+
+    // Clínicas escritas no /stream entre dois flushes da resposta
+    @Value("${guia.stream.clinicas-por-flush:500}")
+    private int clinicasPorFlush;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preencherFormasCanonicas() {
+        try {
+            clinicaBulkRepository.preencherFormasCanonicas();
+        } catch (Exception e) {
+            // Linhas sem forma canônica não aparecem na busca: a falha precisa ficar visível
+            log.error("Não foi possível preencher as formas canônicas: {}", e.getMessage(), e);
         }
+    }
+
+    @Override
+    public ResultadoImportacao addClinicaFromFile(Path arquivo, ModoImportacao modo, ProgressoImportacao progresso)
+            throws IOException {
         try {
-            var clinicas = processorService.processarExcel(file);
-            clinicaRepository.deleteAll();
-            clinicaRepository.saveAll(clinicas);
+            progresso.fase(FaseImportacao.LENDO);
+            var clinicas = processorService.processarExcel(arquivo, progresso);
+            progresso.fase(FaseImportacao.GRAVANDO);
+            return gravarClinicas(clinicas, modo, progresso);
         } catch (Exception e) {
-            throw new IOException("Erro ao processar o arquivo Excel: " + e.getMessage());
+            throw new IOException("Erro ao processar o arquivo Excel: " + e.getMessage(), e);
         }
     }
 
+    private ResultadoImportacao gravarClinicas(List<Clinica> clinicas, ModoImportacao modo, ProgressoImportacao progresso) {
+        long inicio = System.nanoTime();
+        catalogoProcedimentos.resolver(clinicas);
+        ImpressaoDigital.calcular(clinicas);
+        // A carga em massa pré-aloca ids a partir do maior id gravado: a trava, que as edições
+        // manuais também pegam, é mantida até o commit para nenhum INSERT com IDENTITY cair na faixa
+        DiferencaImportacao diferenca = switch (modo) {
+            case JPA -> travaRepository.comTrava(TravaRepository.ESCRITA_GUIA, ESPERA_IMPORTACAO, () ->
+                    transactionTemplate.execute(_ -> {
+                        clinicaRepository.deleteAll();
+                        clinicaRepository.saveAll(clinicas);
+                        // Força os INSERTs aqui para que o tempo medido inclua a escrita
+                        clinicaRepository.flush();
+                        return null;
+                    }));
+            case BULK -> travaRepository.comTrava(TravaRepository.ESCRITA_GUIA, ESPERA_IMPORTACAO, () ->
+                    transactionTemplate.execute(_ -> {
+                        clinicaBulkRepository.substituirTudo(clinicas, progresso::linhasGravadas);
+                        return null;
+                    }));
+            // DDL no MySQL faz commit implícito: a troca controla as próprias etapas, fora de transação.
+            // A trava vai da leitura dos ids até o RENAME, então nenhuma edição manual grava nas
+            // tabelas vivas que a troca vai descartar
+            case STAGING -> travaRepository.comTrava(TravaRepository.ESCRITA_GUIA, ESPERA_IMPORTACAO, () -> {
+                clinicaBulkRepository.substituirComTrocaAtomica(clinicas, progresso::linhasGravadas);
+                return null;
+            });
+            case DIFF -> travaRepository.comTrava(TravaRepository.ESCRITA_GUIA, ESPERA_IMPORTACAO, () ->
+                    transactionTemplate.execute(_ ->
+                            clinicaBulkRepository.aplicarDiferencas(clinicas, progresso::linhasGravadas)));
+        };
+        eventos.publishEvent(GuiaAtualizadaEvent.guiaInteiro("importação " + modo));
+        var resultado = ResultadoImportacao.de(modo, clinicas, System.nanoTime() - inicio, diferenca);
+        if (modo == ModoImportacao.JPA) {
+            progresso.linhasGravadas(resultado.linhasGravadas());
+        }
+        log.info("Importação ({}) gravou {} linhas em {} ms ({} linhas/s)", modo,
+                resultado.linhasGravadas(), resultado.duracaoMs(), Math.round(resultado.linhasPorSegundo()));
+        return resultado;
+    }
+
     @Override
     public ClinicaDTO addClinica(ClinicaDTO clinicaDTO) {
         if (clinicaDTO == null) {
@@ -46,8 +165,16 @@ public class ClinicaServiceImp implements ClinicaService {
         }
         try {
             Clinica clinica = clinicaMapper.toClinica(clinicaDTO);
-            Clinica savedClinica = clinicaRepository.save(clinica);
+            catalogoProcedimentos.resolver(List.of(clinica));
+            ImpressaoDigital.calcular(clinica);
+            Clinica savedClinica = comTravaDeEdicao(() -> {
+                Clinica salva = clinicaRepository.saveAndFlush(clinica);
+                guiaAlteradoManualmente();
+                return salva;
+            });
             return clinicaMapper.toClinicaDTO(savedClinica);
+        } catch (CannotAcquireLockException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Erro ao adicionar clínica: " + e.getMessage());
         }
@@ -59,7 +186,14 @@ public class ClinicaServiceImp implements ClinicaService {
             return;
         }
         try {
-            clinicaRepository.deleteById(id);
+            comTravaDeEdicao(() -> {
+                clinicaRepository.deleteById(id);
+                clinicaRepository.flush();
+                guiaAlteradoManualmente();
+                return null;
+            });
+        } catch (CannotAcquireLockException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Erro ao deletar clínica: " + e.getMessage());
         }
@@ -71,58 +205,73 @@ public class ClinicaServiceImp implements ClinicaService {
             return null;
         }
         try {
-            Clinica existingClinica = clinicaRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Clínica não encontrada"));
-
-            existingClinica.setNome(clinicaDTO.nome());
-            existingClinica.setEmail(clinicaDTO.email());
-            existingClinica.setEndereco(clinicaDTO.endereco());
-            existingClinica.setMunicipio(clinicaDTO.municipio());
-            existingClinica.setTelefone(clinicaDTO.telefone());
-
-
-            // Limpar grupos existentes
-            existingClinica.getGrupos().clear();
-
-            // Adicionar novos grupos
-            if (clinicaDTO.grupos() != null) {
-                for (var grupoDTO : clinicaDTO.grupos()) {
-                    Grupo grupo = new Grupo();
-                    grupo.setNome(grupoDTO.nome());
-                    grupo.setClinica(existingClinica);
-
-                    // Adicionar subgrupos
-                    if (grupoDTO.subgrupos() != null) {
-                        for (var subgrupoDTO : grupoDTO.subgrupos()) {
-                            Subgrupo subgrupo = new Subgrupo();
-                            subgrupo.setNome(subgrupoDTO.nome());
-                            subgrupo.setProcedimentos(subgrupoDTO.procedimentos());
-                            subgrupo.setGrupo(grupo);
-                            grupo.getSubgrupos().add(subgrupo);
-                        }
-                    }
-
-                    existingClinica.getGrupos().add(grupo);
-                }
-            }
-
-            Clinica updatedClinica = clinicaRepository.save(existingClinica);
-            return clinicaMapper.toClinicaDTO(updatedClinica);
+            Clinica dados = clinicaMapper.toClinica(clinicaDTO);
+            // Os nomes novos entram no catálogo antes da trava e da transação da edição: o registro
+            // usa conexão, trava e transação próprias, que não devem se somar às da edição
+            catalogoProcedimentos.resolver(List.of(dados));
+            return comTravaDeEdicao(() -> atualizar(id, dados));
+        } catch (CannotAcquireLockException e) {
+            throw e;
         } catch (Exception e) {
             String errorMsg = e.getMessage() != null ? e.getMessage() : "Erro desconhecido";
             throw new RuntimeException("Erro ao atualizar clínica: " + errorMsg, e);
         }
     }
 
+    private ClinicaDTO atualizar(Long id, Clinica dados) {
+        Clinica existingClinica = clinicaRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Clínica não encontrada"));
+
+        existingClinica.setNome(dados.getNome());
+        existingClinica.setEmail(dados.getEmail());
+        existingClinica.setEndereco(dados.getEndereco());
+        existingClinica.setMunicipio(dados.getMunicipio());
+        existingClinica.setTelefone(dados.getTelefone());
+
+
+        // Limpar grupos existentes
+        existingClinica.getGrupos().clear();
+
+        // Adicionar novos grupos, com os procedimentos já associados ao catálogo
+        for (Grupo grupo : dados.getGrupos()) {
+            grupo.setClinica(existingClinica);
+            existingClinica.getGrupos().add(grupo);
+        }
+
+        ImpressaoDigital.calcular(existingClinica);
+        Clinica updatedClinica = clinicaRepository.saveAndFlush(existingClinica);
+        guiaAlteradoManualmente();
+        return clinicaMapper.toClinicaDTO(updatedClinica);
+    }
+
+    // Edições manuais gravam com a trava de escrita do guia, e fazem commit antes de soltá-la
+    private <T> T comTravaDeEdicao(Supplier<T> edicao) {
+        return travaRepository.comTrava(TravaRepository.ESCRITA_GUIA, ESPERA_EDICAO,
+                () -> transactionTemplate.execute(_ -> edicao.get()));
+    }
+
+    // Depois de uma edição manual o guia não corresponde mais a nenhum arquivo importado,
+    // então reenviar o último arquivo deve reaplicá-lo
+    private void guiaAlteradoManualmente() {
+        importacaoAplicadaRepository.deleteAllInBatch();
+        eventos.publishEvent(GuiaAtualizadaEvent.edicao("edição manual"));
+    }
+
     @Override
     public ClinicaDTO getClinicaById(Long id) {
         if (id == null) {
             return null;
         }
+        SnapshotGuia snapshot = modeloLeitura.atual();
+        if (snapshot != null) {
+            return snapshot.porId(id).orElseThrow(() -> new RuntimeException("Clínica não encontrada"));
+        }
         try {
-            var clinica = clinicaRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Clínica não encontrada"));
-            return clinicaMapper.toClinicaDTO(clinica);
+            var clinicas = clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore(List.of(id)));
+            if (clinicas.isEmpty()) {
+                throw new RuntimeException("Clínica não encontrada");
+            }
+            return clinicas.getFirst();
         } catch (Exception e) {
             throw new RuntimeException("Erro ao buscar clínica: " + e.getMessage());
         }
@@ -130,74 +279,281 @@ public class ClinicaServiceImp implements ClinicaService {
 
     @Override
     public List<ClinicaDTO> getClinicas() {
-        var clinicas = clinicaRepository.findAll();
-        List<ClinicaDTO> clinicaDTOS = new ArrayList<>();
-        for (Clinica clinica : clinicas) {
-            var dto = clinicaMapper.toClinicaDTO(clinica);
-            clinicaDTOS.add(dto);
+        SnapshotGuia snapshot = modeloLeitura.atual();
+        if (snapshot != null) {
+            return snapshot.clinicas();
+        }
+        // Sem snapshot pronto, uma única consulta de projeção para o guia inteiro
+        return clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore());
+    }
+
+    /**
+     * Listagem completa já serializada, com a versão gzip e a ETag. Vazio enquanto não há snapshot:
+     * quem chama serializa {@link #getClinicas()} normalmente.
+     */
+    @Override
+    public Optional<RespostaJson> getClinicasSerializadas() {
+        SnapshotGuia snapshot = modeloLeitura.atual();
+        return snapshot != null ? Optional.of(snapshot.respostaLista()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<RespostaJson> getClinicaSerializada(Long id) {
+        SnapshotGuia snapshot = modeloLeitura.atual();
+        if (snapshot == null || id == null) {
+            return Optional.empty();
+        }
+        return snapshot.respostaDetalhe(id);
+    }
+
+    /**
+     * Escreve o guia em NDJSON: uma clínica completa por linha, na ordem do id.
+     * <p>
+     * As linhas da árvore vêm do MySQL uma a uma ({@code ClinicaBulkRepository#percorrerArvore}),
+     * e cada clínica é escrita assim que a linha seguinte começa outra. Só a clínica corrente fica
+     * em memória, independente do tamanho do guia.
+     */
+    @Override
+    public void streamClinicas(OutputStream saida) throws IOException {
+        long inicio = System.nanoTime();
+        // Sem separador entre os valores raiz (a quebra de linha é escrita à parte) e sem flush
+        // por clínica: a saída é descarregada a cada clinicasPorFlush clínicas
+        ObjectWriter writer = objectMapper.writer()
+                .withRootValueSeparator((String) null)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long[] total = {0};
+        try (JsonGenerator gerador = writer.createGenerator(saida)) {
+            var montador = new ClinicaMapper.MontadorClinicas(clinica -> {
+                writer.writeValue(gerador, clinica);
+                gerador.writeRaw('\n');
+                if (++total[0] % clinicasPorFlush == 0) {
+                    gerador.flush();
+                }
+            });
+            clinicaBulkRepository.percorrerArvore(montador);
+            montador.finalizar();
         }
-        return clinicaDTOS;
+        log.debug("Stream do guia: {} clínicas em {} ms", total[0], (System.nanoTime() - inicio) / 1_000_000);
     }
 
     @Override
     public List<ClinicaDTO> searchClinicas(String nome, String municipio, String endereco,
-                                           String procedimento, String grupo, String subgrupo) {
+                                           String procedimento, String grupo, String subgrupo, String q,
+                                           ConsultaBooleana termos) {
 
         if (nome == null && municipio == null && endereco == null
-                && procedimento == null && grupo == null && subgrupo == null) {
+                && procedimento == null && grupo == null && subgrupo == null && q == null && termos.vazia()) {
             return getClinicas();
         }
 
+        SnapshotGuia snapshot = modeloLeitura.atual();
+        FiltrosBusca filtros = comConsulta(snapshot, FiltrosBusca.de(nome, municipio, endereco, procedimento, grupo, subgrupo), q, termos);
+        if (filtros.ids() != null && filtros.ids().length == 0) {
+            return new ArrayList<>();
+        }
+        if (snapshot != null) {
+            return snapshot.buscar(filtros);
+        }
         try {
-            // Começa com uma Specification vazia
-            Specification<Clinica> spec = (_, _, _) -> null;
-
-            if (nome != null && !nome.isEmpty()) {
-                spec = spec.and((root, _, cb) ->
-                        cb.like(cb.lower(root.get("nome")), "%" + nome.toLowerCase() + "%"));
+            List<Long> ids = idsEncontrados(filtros(filtros));
+            if (ids.isEmpty()) {
+                return new ArrayList<>();
             }
+            return clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore(ids));
+        } catch (Exception e) {
+            throw new RuntimeException("Erro ao buscar clínicas: " + e.getMessage());
+        }
+    }
 
-            if (municipio != null && !municipio.isEmpty()) {
-                spec = spec.and((root, _, cb) ->
-                        cb.like(cb.lower(root.get("municipio")), "%" + municipio.toLowerCase() + "%"));
-            }
+    @Override
+    public PaginaClinicasDTO getClinicas(OrdenacaoClinicas ordenacao, String cursor, int limite) {
+        return pagina(modeloLeitura.atual(), FiltrosBusca.NENHUM, ordenacao, cursor, limite);
+    }
 
-            if (endereco != null && !endereco.isEmpty()) {
-                spec = spec.and((root, _, cb) ->
-                        cb.like(cb.lower(root.get("endereco")), "%" + endereco.toLowerCase() + "%"));
-            }
+    @Override
+    public PaginaClinicasDTO searchClinicas(String nome, String municipio, String endereco,
+                                           String procedimento, String grupo, String subgrupo, String q,
+                                           ConsultaBooleana termos, OrdenacaoClinicas ordenacao, String cursor, int limite) {
+        FiltrosBusca filtros = FiltrosBusca.de(nome, municipio, endereco, procedimento, grupo, subgrupo);
+        SnapshotGuia snapshot = modeloLeitura.atual();
+        return pagina(snapshot, comConsulta(snapshot, filtros, q, termos), ordenacao, cursor, limite);
+    }
 
-            // Busca por procedimento (dentro da lista de procedimentos do subgrupo)
-            if (procedimento != null && !procedimento.isEmpty()) {
-                spec = spec.and((root, _, cb) -> {
-                    Join<Clinica, Grupo> grupos = root.join("grupos");
-                    Join<Grupo, Subgrupo> subgrupos = grupos.join("subgrupos");
-                    return cb.isMember(procedimento.toLowerCase(), subgrupos.get("procedimentos"));
-                });
-            }
+    /**
+     * A busca com as contagens por município, grupo e subgrupo do resultado inteiro. Os filtros,
+     * a consulta textual e os termos são avaliados uma única vez, num bitmap do snapshot que dá
+     * tanto a lista (ou a página) quanto as facetas.
+     *
+     * @param limite tamanho da página; nulo para o resultado inteiro
+     * @throws ModeloLeituraIndisponivelException se ainda não há snapshot pronto
+     */
+    @Override
+    public PaginaClinicasDTO searchClinicasComFacetas(String nome, String municipio, String endereco,
+                                                      String procedimento, String grupo, String subgrupo, String q,
+                                                      ConsultaBooleana termos, OrdenacaoClinicas ordenacao,
+                                                      String cursor, Integer limite) {
+        SnapshotGuia snapshot = modeloLeitura.atual();
+        if (snapshot == null) {
+            throw new ModeloLeituraIndisponivelException("As facetas da busca ainda estão sendo montadas");
+        }
+        OrdenacaoClinicas ordem = ordenacao != null ? ordenacao : OrdenacaoClinicas.NOME;
+        CursorClinicas posicao = limite != null ? posicao(cursor, ordem, limite) : null;
+        FiltrosBusca filtros = comConsulta(snapshot, FiltrosBusca.de(nome, municipio, endereco, procedimento, grupo, subgrupo), q, termos);
 
-            // Busca por grupo
-            if (grupo != null && !grupo.isEmpty()) {
-                spec = spec.and((root, _, cb) -> {
-                    Join<Clinica, Grupo> grupos = root.join("grupos");
-                    return cb.like(cb.lower(grupos.get("nome")), "%" + grupo.toLowerCase() + "%");
-                });
-            }
+        long[] selecao = snapshot.selecionar(filtros);
+        PaginaClinicasDTO pagina = limite != null
+                ? snapshot.pagina(selecao, ordem, posicao, limite)
+                : PaginaClinicasDTO.builder().clinicas(snapshot.buscar(selecao)).build();
+        return PaginaClinicasDTO.builder()
+                .clinicas(pagina.clinicas())
+                .proximoCursor(pagina.proximoCursor())
+                .facetas(snapshot.facetas(selecao))
+                .build();
+    }
 
-            // Busca por subgrupo
-            if (subgrupo != null && !subgrupo.isEmpty()) {
-                spec = spec.and((root, _, cb) -> {
-                    Join<Clinica, Grupo> grupos = root.join("grupos");
-                    Join<Grupo, Subgrupo> subgrupos = grupos.join("subgrupos");
-                    return cb.like(cb.lower(subgrupos.get("nome")), "%" + subgrupo.toLowerCase() + "%");
-                });
-            }
+    /**
+     * A consulta textual e os termos são resolvidos em memória e viram restrições de ids para os
+     * demais filtros, avaliados no mesmo snapshot. Sem snapshot não há como resolvê-los sem ler o
+     * guia inteiro, e a lista de ids não cabe num {@code IN} do banco: a busca é recusada.
+     *
+     * @throws ModeloLeituraIndisponivelException se há consulta textual ou termos e o snapshot
+     *                                            ainda não está pronto
+     */
+    private FiltrosBusca comConsulta(SnapshotGuia snapshot, FiltrosBusca filtros, String q, ConsultaBooleana termos) {
+        boolean textual = q != null && !q.isBlank();
+        if (!textual && termos.vazia()) {
+            return filtros;
+        }
+        if (snapshot == null) {
+            throw new ModeloLeituraIndisponivelException("A busca textual e por termos ainda está sendo montada");
+        }
+        if (textual) {
+            filtros = filtros.restritoA(snapshot.ids(q));
+        }
+        if (!termos.vazia()) {
+            filtros = filtros.restritoA(snapshot.ids(termos));
+        }
+        return filtros;
+    }
 
-            return clinicaRepository.findAll(spec).stream()
-                    .map(clinicaMapper::toClinicaDTO)
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            throw new RuntimeException("Erro ao buscar clínicas: " + e.getMessage());
+    private Specification<Clinica> filtros(FiltrosBusca filtros) {
+        Integer procedimentoId = filtros.procedimento() != null
+                ? catalogoProcedimentos.id(filtros.procedimento())
+                : null;
+        return CompiladorBusca.compilar(filtros, procedimentoId);
+    }
+
+    /**
+     * Sugestões de preenchimento para o campo, pelo índice do snapshot.
+     *
+     * @throws IllegalArgumentException           se o limite está fora da faixa aceita
+     * @throws ModeloLeituraIndisponivelException se ainda não há snapshot pronto
+     */
+    @Override
+    public List<SugestaoDTO> getSugestoes(CampoSugestao campo, String prefixo, int limite) {
+        if (limite < 1 || limite > LIMITE_MAXIMO_SUGESTOES) {
+            throw new IllegalArgumentException("O limite deve estar entre 1 e " + LIMITE_MAXIMO_SUGESTOES);
+        }
+        SnapshotGuia snapshot = modeloLeitura.atual();
+        if (snapshot == null) {
+            throw new ModeloLeituraIndisponivelException("O índice de sugestões ainda está sendo montado");
+        }
+        return snapshot.sugestoes().sugerir(campo, prefixo, limite);
+    }
+
+    /**
+     * Uma página das clínicas que passam nos filtros, por paginação de chave: a consulta de ids
+     * continua a partir de {@code (campo, id)} da última clínica da página anterior e traz
+     * {@code limite + 1} linhas, a extra só para saber se há próxima página. As árvores da página
+     * vêm depois numa única consulta de projeção. Com snapshot (o mesmo em que a consulta textual
+     * e os termos foram resolvidos), a página sai dele, com a mesma ordem e o mesmo formato de cursor.
+     *
+     * @throws IllegalArgumentException se o limite está fora da faixa aceita ou o cursor é inválido
+     */
+    private PaginaClinicasDTO pagina(SnapshotGuia snapshot, FiltrosBusca filtros, OrdenacaoClinicas ordenacao,
+                                     String cursor, int limite) {
+        OrdenacaoClinicas ordem = ordenacao != null ? ordenacao : OrdenacaoClinicas.NOME;
+        CursorClinicas posicao = posicao(cursor, ordem, limite);
+
+        if (filtros.ids() != null && filtros.ids().length == 0) {
+            return PaginaClinicasDTO.builder().clinicas(new ArrayList<>()).build();
+        }
+        if (snapshot != null) {
+            return snapshot.pagina(filtros, ordem, posicao, limite);
+        }
+
+        HibernateCriteriaBuilder cb = entityManager.unwrap(Session.class).getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Clinica> root = query.from(Clinica.class);
+        Expression<Long> id = root.get("id");
+        // Mesma chave do snapshot: nulo vira "" e a comparação é a de OrdenacaoClinicas.compararChaves
+        Expression<String> valor = cb.coalesce(root.get(ordem.getAtributo()), "");
+        Expression<String> campo = cb.collate(valor, OrdenacaoClinicas.COLACAO_SQL);
+        query.select(cb.tuple(id, valor));
+
+        List<Predicate> condicoes = new ArrayList<>();
+        Predicate filtro = filtros(filtros).toPredicate(root, query, cb);
+        if (filtro != null) {
+            condicoes.add(filtro);
+        }
+        if (posicao != null) {
+            condicoes.add(cb.or(
+                    cb.greaterThan(campo, posicao.valor()),
+                    cb.and(cb.equal(campo, posicao.valor()), cb.greaterThan(id, posicao.id()))));
+        }
+        query.where(condicoes.toArray(Predicate[]::new));
+        query.orderBy(cb.asc(campo), cb.asc(id));
+
+        List<Tuple> chaves = entityManager.createQuery(query).setMaxResults(limite + 1).getResultList();
+        boolean haProxima = chaves.size() > limite;
+        if (haProxima) {
+            chaves = chaves.subList(0, limite);
+        }
+        if (chaves.isEmpty()) {
+            return PaginaClinicasDTO.builder().clinicas(new ArrayList<>()).build();
+        }
+
+        List<Long> ids = chaves.stream().map(chave -> chave.get(0, Long.class)).toList();
+        // A projeção devolve as árvores na ordem do id; a página segue a ordem das chaves
+        Map<Long, ClinicaDTO> porId = new HashMap<>();
+        for (ClinicaDTO dto : clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore(ids))) {
+            porId.put(dto.id(), dto);
+        }
+        List<ClinicaDTO> clinicas = new ArrayList<>(ids.size());
+        for (Long clinicaId : ids) {
+            clinicas.add(porId.get(clinicaId));
+        }
+
+        String proximoCursor = null;
+        if (haProxima) {
+            Tuple ultima = chaves.getLast();
+            proximoCursor = new CursorClinicas(ordem, ultima.get(1, String.class), ultima.get(0, Long.class)).codificar();
+        }
+        return PaginaClinicasDTO.builder()
+                .clinicas(clinicas)
+                .proximoCursor(proximoCursor)
+                .build();
+    }
+
+    // Confere o limite da página e decodifica o cursor; sem cursor, a página começa do início
+    private static CursorClinicas posicao(String cursor, OrdenacaoClinicas ordem, int limite) {
+        if (limite < 1 || limite > LIMITE_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("O limite deve estar entre 1 e " + LIMITE_MAXIMO_PAGINA);
+        }
+        return cursor != null && !cursor.isEmpty() ? CursorClinicas.decodificar(cursor, ordem) : null;
+    }
+
+    // Só os ids das clínicas que passam nos filtros; as árvores vêm depois numa única consulta
+    // de projeção, então a busca custa duas consultas independente do número de resultados
+    private List<Long> idsEncontrados(Specification<Clinica> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Clinica> root = query.from(Clinica.class);
+        query.select(root.<Long>get("id"));
+        Predicate filtro = spec.toPredicate(root, query, cb);
+        if (filtro != null) {
+            query.where(filtro);
         }
+        return entityManager.createQuery(query).getResultList();
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.guiamedicosback.guia.service;
+
+import com.guiamedicosback.guia.repository.ClinicaBulkRepository;
+import com.guiamedicosback.guia.service.importacao.LinhaImportacao;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Exporta o guia para .xlsx no mesmo layout da importação (prestador, grupo, subgrupo,
+ * procedimento), de modo que o arquivo exportado pode ser reimportado. Nós sem filhos saem numa
+ * linha com as colunas seguintes vazias.
+ * <p>
+ * As linhas vêm do banco por um cursor de avanço único e vão para um {@link SXSSFWorkbook}, que
+ * mantém em memória só uma janela de linhas e descarrega as demais em arquivo temporário. A memória
+ * usada não depende do tamanho do guia.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExcelExportService {
+
+    // Linhas mantidas em memória pelo SXSSF antes de descarregar em disco
+    private static final int JANELA_LINHAS = 100;
+    private static final int MAXIMO_LINHAS_PLANILHA = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private static final String[] CABECALHO = {"Prestador", "Grupo", "Subgrupo", "Procedimento"};
+
+    private final ClinicaBulkRepository clinicaBulkRepository;
+
+    public void exportarXlsx(OutputStream saida) throws IOException {
+        long inicio = System.nanoTime();
+        SXSSFWorkbook workbook = new SXSSFWorkbook(JANELA_LINHAS);
+        workbook.setCompressTempFiles(true);
+        try {
+            EscritorPlanilhas escritor = new EscritorPlanilhas(workbook);
+            clinicaBulkRepository.percorrerLinhas(escritor::escrever);
+            workbook.write(saida);
+            log.debug("Exportação concluída: {} linhas em {} planilha(s), {} ms", escritor.linhas,
+                    workbook.getNumberOfSheets(), (System.nanoTime() - inicio) / 1_000_000);
+        } finally {
+            // Apaga os arquivos temporários do SXSSF
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Escreve as linhas em sequência, abrindo uma nova planilha (com cabeçalho) quando a corrente
+     * atinge o limite de linhas do formato. A importação lê todas as planilhas do arquivo.
+     */
+    private static final class EscritorPlanilhas {
+        private final SXSSFWorkbook workbook;
+        private Sheet planilha;
+        private int proximaLinha;
+        private long linhas;
+
+        EscritorPlanilhas(SXSSFWorkbook workbook) {
+            this.workbook = workbook;
+            novaPlanilha();
+        }
+
+        void escrever(LinhaImportacao linha) {
+            if (proximaLinha == MAXIMO_LINHAS_PLANILHA) {
+                novaPlanilha();
+            }
+            Row row = planilha.createRow(proximaLinha++);
+            row.createCell(0).setCellValue(linha.prestador());
+            row.createCell(1).setCellValue(linha.grupo());
+            row.createCell(2).setCellValue(linha.subgrupo());
+            row.createCell(3).setCellValue(linha.procedimento());
+            linhas++;
+        }
+
+        private void novaPlanilha() {
+            planilha = workbook.createSheet("Guia " + (workbook.getNumberOfSheets() + 1));
+            Row cabecalho = planilha.createRow(0);
+            for (int i = 0; i < CABECALHO.length; i++) {
+                cabecalho.createCell(i).setCellValue(CABECALHO[i]);
+            }
+            proximaLinha = 1;
+        }
+    }
+}
@@ -1,87 +1,74 @@
 package com.guiamedicosback.guia.service;
 
 import com.guiamedicosback.guia.entity.Clinica;
-import com.guiamedicosback.guia.entity.Grupo;
-import com.guiamedicosback.guia.entity.Subgrupo;
+import com.guiamedicosback.guia.entity.dto.ResultadoImportacao;
 import com.guiamedicosback.guia.repository.ClinicaRepository;
+import com.guiamedicosback.guia.repository.TravaRepository;
+import com.guiamedicosback.guia.service.busca.GuiaAtualizadaEvent;
+import com.guiamedicosback.guia.service.importacao.ArvoreClinicasBuilder;
+import com.guiamedicosback.guia.service.importacao.FaseImportacao;
+import com.guiamedicosback.guia.service.importacao.ImpressaoDigital;
+import com.guiamedicosback.guia.service.importacao.LeitorPlanilhas;
+import com.guiamedicosback.guia.service.importacao.ModoImportacao;
+import com.guiamedicosback.guia.service.importacao.ProgressoImportacao;
 import lombok.RequiredArgsConstructor;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
-import java.text.Normalizer;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-@Transactional
 public class ExcelProcessorProced {
 
-    private final ClinicaRepository clinicaRepository;
-
-    public void importarProcedimentos(MultipartFile file) throws IOException {
-
-        Map<String, Clinica> clinicasMap = clinicaRepository.findAll()
-                .stream()
-                .collect(Collectors.toMap(
-                        c -> normalize(c.getNome()),
-                        c -> c,
-                        (a, b) -> a
-                ));
-
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-
-                String nomeClinica = getCellValue(row.getCell(0));
-                String nomeGrupo = getCellValue(row.getCell(1));
-                String nomeSubgrupo = getCellValue(row.getCell(2));
-                String nomeProcedimento = getCellValue(row.getCell(3));
-
-                if (nomeClinica.isBlank()) continue;
+    // Mesma espera das importações de clínicas: outra importação pode estar gravando
+    private static final Duration ESPERA_IMPORTACAO = Duration.ofMinutes(10);
 
-                Clinica clinica = clinicasMap.computeIfAbsent(
-                        normalize(nomeClinica),
-                        k -> Clinica.builder().nome(nomeClinica).build()
-                );
-
-                Grupo grupo = clinica.encontrarOuCriarGrupo(nomeGrupo);
-                Subgrupo subgrupo = grupo.encontrarOuCriarSubgrupo(nomeSubgrupo);
-
-                if (!subgrupo.getProcedimentos().contains(nomeProcedimento)) {
-                    subgrupo.getProcedimentos().add(nomeProcedimento);
-                }
+    private final ClinicaRepository clinicaRepository;
+    private final LeitorPlanilhas leitor;
+    private final CatalogoProcedimentos catalogoProcedimentos;
+    private final TravaRepository travaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventos;
+
+    public ResultadoImportacao importarProcedimentos(Path arquivo, ProgressoImportacao progresso) throws IOException {
+
+        progresso.fase(FaseImportacao.LENDO);
+        ArvoreClinicasBuilder lidas = new ArvoreClinicasBuilder();
+        // Todas as planilhas: a exportação divide guias grandes em várias
+        leitor.ler(arquivo, false, linha -> {
+            progresso.linhaLida();
+            if (!linha.prestador().isBlank()) {
+                lidas.adicionar(linha);
             }
-
-            clinicaRepository.saveAll(clinicasMap.values());
-        }
-    }
-
-    private String normalize(String s) {
-        if (s == null) return "";
-        String t = Normalizer.normalize(s, Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "");
-        return t.toLowerCase().trim().replaceAll("\\s+", " ");
-    }
-
-    private String getCellValue(Cell cell) {
-        if (cell == null) return "";
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue().trim();
-            case NUMERIC -> String.valueOf((long) cell.getNumericCellValue());
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            default -> "";
-        };
+        });
+
+        progresso.fase(FaseImportacao.GRAVANDO);
+        long inicio = System.nanoTime();
+        // Os nomes novos entram no catálogo antes da trava de escrita, como nas importações de clínicas
+        catalogoProcedimentos.resolver(lidas.getClinicas());
+        // A árvore gravada vai da leitura do guia ao commit sob a trava de escrita: nenhuma
+        // importação ou edição de outra instância grava no meio
+        List<Clinica> clinicas = travaRepository.comTrava(TravaRepository.ESCRITA_GUIA, ESPERA_IMPORTACAO, () ->
+                transactionTemplate.execute(_ -> {
+                    // Índice das clínicas existentes, com a árvore inteira carregada em três
+                    // consultas: as linhas do arquivo são mescladas nelas
+                    List<Clinica> mescladas = new ArvoreClinicasBuilder(clinicaRepository.carregarGuiaCompleto())
+                            .mesclar(lidas)
+                            .getClinicas();
+                    ImpressaoDigital.calcular(mescladas);
+                    clinicaRepository.saveAll(mescladas);
+                    clinicaRepository.flush();
+                    return mescladas;
+                }));
+
+        var resultado = ResultadoImportacao.de(ModoImportacao.JPA, clinicas, System.nanoTime() - inicio);
+        progresso.linhasGravadas(resultado.linhasGravadas());
+        eventos.publishEvent(GuiaAtualizadaEvent.guiaInteiro("importação de procedimentos"));
+        return resultado;
     }
 }
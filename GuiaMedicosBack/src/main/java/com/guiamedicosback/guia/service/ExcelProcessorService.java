@@ -1,253 +1,159 @@
 package com.guiamedicosback.guia.service;
 
 import com.guiamedicosback.guia.entity.Clinica;
-import com.guiamedicosback.guia.entity.Grupo;
-import com.guiamedicosback.guia.entity.Subgrupo;
+import com.guiamedicosback.guia.service.importacao.ArvoreClinicasBuilder;
+import com.guiamedicosback.guia.service.importacao.LeitorPlanilhas;
+import com.guiamedicosback.guia.service.importacao.LinhaImportacao;
+import com.guiamedicosback.guia.service.importacao.ProgressoImportacao;
+import com.guiamedicosback.guia.service.importacao.XlsxStreamingReader;
+import com.guiamedicosback.guia.service.importacao.XlsxStreamingReader.PastaXlsx;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class ExcelProcessorService {
 
-    public List<Clinica> processarExcel(MultipartFile file) throws IOException {
-        if (file == null || file.isEmpty()) {
-            throw new IllegalArgumentException("Arquivo não pode ser nulo ou vazio");
-        }
+    private final LeitorPlanilhas leitor;
+    private final XlsxStreamingReader xlsxReader;
 
-        String originalFilename = file.getOriginalFilename();
-        log.debug("Processando arquivo: {}, Tamanho: {} bytes, Tipo MIME: {}",
-                originalFilename, file.getSize(), file.getContentType());
+    // Pool próprio: a leitura faz I/O e não deve ocupar o commonPool usado pelo resto da aplicação
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
-        // Validação do tipo de arquivo
-        if (originalFilename == null ||
-                (!originalFilename.toLowerCase().endsWith(".xlsx") &&
-                        !originalFilename.toLowerCase().endsWith(".xls"))) {
-            throw new IllegalArgumentException("Formato de arquivo inválido. Apenas arquivos .xlsx ou .xls são suportados.");
-        }
+    @Value("${guia.importacao.paralelo:true}")
+    private boolean paralelo;
 
-        try (InputStream inputStream = file.getInputStream()) {
-            return processarExcelInputStream(inputStream);
-        } catch (Exception e) {
-            log.error("Erro ao processar arquivo Excel: {}", e.getMessage(), e);
-            throw new IOException("Erro ao processar arquivo Excel: " + e.getMessage(), e);
-        }
+    @PreDestroy
+    void encerrar() {
+        pool.shutdownNow();
     }
 
-    private List<Clinica> processarExcelInputStream(InputStream inputStream) throws IOException {
-        List<Clinica> clinicas = new ArrayList<>();
-
-        // Tenta abrir como XSSF (formato .xlsx) primeiro
-        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
-            log.debug("Arquivo aberto como XSSFWorkbook (formato .xlsx)");
-            processarWorkbook(workbook, clinicas);
-        } catch (Exception e1) {
-            log.warn("Falha ao abrir como XSSFWorkbook, tentando WorkbookFactory...");
-
-            // Fecha e recria o InputStream
-            inputStream.close();
-            // Note: Não podemos reutilizar o InputStream, então o código abaixo é apenas para referência
-            throw new IOException("Não foi possível processar o arquivo. Certifique-se de que é um arquivo Excel válido (.xlsx).");
+    public List<Clinica> processarExcel(Path arquivo, ProgressoImportacao progresso) throws IOException {
+        log.debug("Processando arquivo: {}, Tamanho: {} bytes", arquivo.getFileName(), Files.size(arquivo));
+        ArvoreClinicasBuilder arvore;
+
+        if (leitor.formato(arquivo) != LeitorPlanilhas.Formato.XLSX) {
+            // .xls e CSV são um único fluxo de registros: a leitura é sempre sequencial
+            arvore = lerSequencial(arquivo, progresso);
+        } else {
+            try (PastaXlsx pasta = xlsxReader.abrir(arquivo)) {
+                if (paralelo && pasta.totalPlanilhas() > 1) {
+                    arvore = processarEmParalelo(pasta, progresso);
+                } else {
+                    arvore = new ArvoreClinicasBuilder();
+                    for (int i = 0; i < pasta.totalPlanilhas(); i++) {
+                        lerPlanilha(pasta, i, arvore, progresso);
+                    }
+                }
+            }
         }
 
-        return clinicas;
+        log.debug("Processamento concluído. Total de prestadores encontrados: {}", arvore.totalClinicas());
+        return arvore.getClinicas();
     }
 
-    private void processarWorkbook(Workbook workbook, List<Clinica> clinicas) {
-        int totalSheets = workbook.getNumberOfSheets();
-        log.debug("Total de planilhas no arquivo: {}", totalSheets);
-
-        // Processa todas as planilhas
-        for (int i = 0; i < totalSheets; i++) {
-            Sheet sheet = workbook.getSheetAt(i);
-            String sheetName = sheet.getSheetName();
-            log.debug("Processando planilha {}: '{}'", i + 1, sheetName);
-
-            processarPlanilha(sheet, clinicas);
-        }
-
-        log.debug("Processamento concluído. Total de prestadores encontrados: {}", clinicas.size());
+    private ArvoreClinicasBuilder lerSequencial(Path arquivo, ProgressoImportacao progresso) throws IOException {
+        ArvoreClinicasBuilder arvore = new ArvoreClinicasBuilder();
+        // Leitura em streaming: cada linha é incorporada à árvore assim que é lida
+        leitor.ler(arquivo, false, linha -> {
+            progresso.linhaLida();
+            processarLinha(linha, arvore);
+        });
+        return arvore;
     }
 
-    private void processarPlanilha(Sheet sheet, List<Clinica> clinicas) {
-        Iterator<Row> rowIterator = sheet.iterator();
-        int linhaAtual = 0;
-        int linhasProcessadas = 0;
-
-        while (rowIterator.hasNext()) {
-            Row row = rowIterator.next();
-            linhaAtual++;
-
-            // Pula a linha do cabeçalho (linha 1)
-            if (linhaAtual == 1) {
-                log.debug("Pulando linha de cabeçalho na linha {}", linhaAtual);
-                continue;
-            }
-
-            // Verifica se a linha está vazia
-            if (isRowEmpty(row)) {
-                continue;
-            }
-
-            // Processa a linha
-            if (processarLinha(row, clinicas)) {
-                linhasProcessadas++;
-            }
-
-            // Log a cada 100 linhas processadas
-            if (linhasProcessadas % 100 == 0) {
-                log.debug("Linhas processadas na planilha {}: {}", sheet.getSheetName(), linhasProcessadas);
-            }
+    /**
+     * Cada planilha é lida por um worker em uma árvore parcial própria, e as árvores são mescladas
+     * aos pares, sempre a da esquerda recebendo a da direita. Como a mesclagem preserva a ordem de
+     * primeira ocorrência, o resultado é o mesmo da leitura sequencial.
+     */
+    private ArvoreClinicasBuilder processarEmParalelo(PastaXlsx pasta, ProgressoImportacao progresso) throws IOException {
+        log.debug("Lendo {} planilhas em paralelo", pasta.totalPlanilhas());
+        try {
+            return pool.invoke(new LeituraPlanilhas(pasta, 0, pasta.totalPlanilhas(), progresso));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
 
-        log.debug("Planilha '{}': {} linhas de dados processadas", sheet.getSheetName(), linhasProcessadas);
+    private void lerPlanilha(PastaXlsx pasta, int indice, ArvoreClinicasBuilder arvore, ProgressoImportacao progresso) throws IOException {
+        pasta.lerPlanilha(indice, linha -> {
+            progresso.linhaLida();
+            processarLinha(linha, arvore);
+        });
     }
 
-    private boolean processarLinha(Row row, List<Clinica> clinicas) {
+    private boolean processarLinha(LinhaImportacao linha, ArvoreClinicasBuilder arvore) {
         try {
-            String prestador = getCellStringValue(row.getCell(0)).trim();
-            String grupoNome = getCellStringValue(row.getCell(1)).trim();
-            String subgrupoNome = getCellStringValue(row.getCell(2)).trim();
-            String procedimento = getCellStringValue(row.getCell(3)).trim();
-
             // Validação básica
-            if (prestador.isEmpty() || procedimento.isEmpty()) {
+            if (linha.prestador().isEmpty()) {
                 return false;
             }
 
-            // 1. Buscar ou criar clínica
-            Clinica clinica = encontrarOuCriarClinica(clinicas, prestador);
-
-            // 2. Buscar ou criar grupo
-            Grupo grupo = encontrarOuCriarGrupo(clinica, grupoNome);
-
-            // 3. Buscar ou criar subgrupo
-            Subgrupo subgrupo = encontrarOuCriarSubgrupo(grupo, subgrupoNome);
-
-            // 4. Adicionar procedimento (evitar duplicatas)
-            adicionarProcedimentoSeNovo(subgrupo, procedimento);
-
+            // Clínica, grupo e subgrupo são localizados (ou criados) pelo índice da árvore,
+            // e o procedimento só é adicionado se ainda não existir no subgrupo. Linhas sem
+            // procedimento criam só os níveis preenchidos; com procedimento, um grupo ou
+            // subgrupo em branco vira um nó de nome vazio
+            arvore.adicionar(linha);
             return true;
 
         } catch (Exception e) {
-            log.warn("Erro ao processar linha {}: {}", row.getRowNum() + 1, e.getMessage());
+            log.warn("Erro ao processar linha {}: {}", linha.linha(), e.getMessage());
             return false;
         }
     }
 
-    private Clinica encontrarOuCriarClinica(List<Clinica> clinicas, String nome) {
-        return clinicas.stream()
-                .filter(c -> c.getNome().equalsIgnoreCase(nome))
-                .findFirst()
-                .orElseGet(() -> {
-                    Clinica novaClinica = new Clinica();
-                    novaClinica.setNome(nome);
-                    novaClinica.setEndereco("");
-                    novaClinica.setMunicipio("");
-                    novaClinica.setTelefone("");
-                    novaClinica.setEmail("");
-                    novaClinica.setGrupos(new ArrayList<>());
-                    clinicas.add(novaClinica);
-                    return novaClinica;
-                });
-    }
-
-    private Grupo encontrarOuCriarGrupo(Clinica clinica, String grupoNome) {
-        return clinica.getGrupos().stream()
-                .filter(g -> g.getNome().equals(grupoNome))
-                .findFirst()
-                .orElseGet(() -> {
-                    Grupo novoGrupo = new Grupo();
-                    novoGrupo.setNome(grupoNome);
-                    novoGrupo.setClinica(clinica);
-                    novoGrupo.setSubgrupos(new ArrayList<>());
-                    clinica.getGrupos().add(novoGrupo);
-                    return novoGrupo;
-                });
-    }
-
-    private Subgrupo encontrarOuCriarSubgrupo(Grupo grupo, String subgrupoNome) {
-        return grupo.getSubgrupos().stream()
-                .filter(s -> s.getNome().equals(subgrupoNome))
-                .findFirst()
-                .orElseGet(() -> {
-                    Subgrupo novoSubgrupo = new Subgrupo();
-                    novoSubgrupo.setNome(subgrupoNome);
-                    novoSubgrupo.setGrupo(grupo);
-                    novoSubgrupo.setProcedimentos(new ArrayList<>());
-                    grupo.getSubgrupos().add(novoSubgrupo);
-                    return novoSubgrupo;
-                });
-    }
-
-    private void adicionarProcedimentoSeNovo(Subgrupo subgrupo, String procedimento) {
-        if (!subgrupo.getProcedimentos().contains(procedimento)) {
-            subgrupo.getProcedimentos().add(procedimento);
+    /**
+     * Lê as planilhas do intervalo [inicio, fim) e devolve a árvore mesclada delas.
+     */
+    private final class LeituraPlanilhas extends RecursiveTask<ArvoreClinicasBuilder> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // A tarefa só vive dentro do pool de leitura: a pasta e o progresso não são serializados
+        private final transient PastaXlsx pasta;
+        private final int inicio;
+        private final int fim;
+        private final transient ProgressoImportacao progresso;
+
+        LeituraPlanilhas(PastaXlsx pasta, int inicio, int fim, ProgressoImportacao progresso) {
+            this.pasta = pasta;
+            this.inicio = inicio;
+            this.fim = fim;
+            this.progresso = progresso;
         }
-    }
 
-    private boolean isRowEmpty(Row row) {
-        if (row == null) {
-            return true;
-        }
-
-        for (int i = 0; i < 4; i++) { // Verifica apenas as 4 colunas que usamos
-            Cell cell = row.getCell(i);
-            if (cell != null) {
-                String value = getCellStringValue(cell).trim();
-                if (!value.isEmpty()) {
-                    return false;
+        @Override
+        protected ArvoreClinicasBuilder compute() {
+            if (fim - inicio == 1) {
+                ArvoreClinicasBuilder arvore = new ArvoreClinicasBuilder();
+                try {
+                    lerPlanilha(pasta, inicio, arvore, progresso);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+                return arvore;
             }
-        }
-        return true;
-    }
-
-    private String getCellStringValue(Cell cell) {
-        if (cell == null) {
-            return "";
-        }
 
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
-                } else {
-                    // Remove .0 de números inteiros
-                    double num = cell.getNumericCellValue();
-                    if (num == Math.floor(num) && !Double.isInfinite(num)) {
-                        return String.valueOf((long) num);
-                    } else {
-                        return String.valueOf(num);
-                    }
-                }
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                try {
-                    // Tenta obter o valor da fórmula
-                    return switch (cell.getCachedFormulaResultType()) {
-                        case NUMERIC -> String.valueOf(cell.getNumericCellValue());
-                        case STRING -> cell.getStringCellValue();
-                        case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-                        default -> cell.getCellFormula();
-                    };
-                } catch (Exception e) {
-                    return cell.getCellFormula();
-                }
-            default:
-                return "";
+            int meio = (inicio + fim) >>> 1;
+            LeituraPlanilhas esquerda = new LeituraPlanilhas(pasta, inicio, meio, progresso);
+            LeituraPlanilhas direita = new LeituraPlanilhas(pasta, meio, fim, progresso);
+            esquerda.fork();
+            ArvoreClinicasBuilder arvoreDireita = direita.compute();
+            return esquerda.join().mesclar(arvoreDireita);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,225 @@
+package com.guiamedicosback.guia.service;
+
+import com.guiamedicosback.guia.entity.ImportacaoAplicada;
+import com.guiamedicosback.guia.entity.dto.ImportacaoJobDTO;
+import com.guiamedicosback.guia.entity.dto.ResultadoImportacao;
+import com.guiamedicosback.guia.repository.ImportacaoAplicadaRepository;
+import com.guiamedicosback.guia.service.importacao.FaseImportacao;
+import com.guiamedicosback.guia.service.importacao.ImportacaoJob;
+import com.guiamedicosback.guia.service.importacao.ModoImportacao;
+import com.guiamedicosback.guia.service.importacao.TipoImportacao;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fila de importações assíncronas.
+ * <p>
+ * O upload é gravado em disco e a requisição retorna imediatamente com o id do job. Um único
+ * worker processa os jobs em ordem, o que serializa importações concorrentes. Um novo upload de
+ * clínicas substitui o guia inteiro, então ele descarta os jobs que ainda estão na fila, de
+ * clínicas ou de procedimentos; os ids descartados voltam na resposta do upload.
+ * <p>
+ * O SHA-256 do arquivo é calculado enquanto ele é gravado em disco. Se não há importação pendente
+ * e o arquivo é idêntico ao último aplicado para o mesmo tipo e modo, o job é encerrado na hora como
+ * {@link FaseImportacao#SEM_ALTERACOES}, sem leitura nem escrita no guia.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportacaoJobService {
+
+    // Jobs concluídos mantidos para consulta de status
+    private static final int JOBS_RETIDOS = 100;
+
+    private final ClinicaService clinicaService;
+    private final ExcelProcessorProced excelProcessorProced;
+    private final ImportacaoAplicadaRepository importacaoAplicadaRepository;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "importacao"));
+    private final Map<UUID, ImportacaoJob> jobs = new LinkedHashMap<>();
+
+    @Value("${guia.importacao.diretorio:${java.io.tmpdir}/guia-importacoes}")
+    private Path diretorio;
+
+    @Value("${guia.importacao.modo:BULK}")
+    private ModoImportacao modoPadrao;
+
+    @PostConstruct
+    void criarDiretorio() throws IOException {
+        Files.createDirectories(diretorio);
+    }
+
+    @PreDestroy
+    void encerrar() {
+        executor.shutdownNow();
+    }
+
+    public ImportacaoJobDTO enfileirar(TipoImportacao tipo, MultipartFile file, ModoImportacao modo) throws IOException {
+        UUID id = UUID.randomUUID();
+        Path destino = diretorio.resolve(id + extensao(file.getOriginalFilename()));
+        String hash = gravarComHash(file, destino);
+        // O modo efetivo fica no job: ele aparece no status e entra na comparação com o último aplicado
+        if (tipo == TipoImportacao.CLINICAS && modo == null) {
+            modo = modoPadrao;
+        }
+
+        ImportacaoJob job = new ImportacaoJob(id, tipo, modo, file.getOriginalFilename(), destino, hash);
+        synchronized (jobs) {
+            // Com jobs pendentes o guia ainda vai mudar, então a comparação só vale com a fila vazia
+            if (!haJobsPendentes() && arquivoJaAplicado(tipo, hash, modo)) {
+                job.concluirSemAlteracoes();
+                jobs.put(id, job);
+                removerJobsAntigos();
+                apagarArquivo(job);
+                log.info("Importação {} ({}) sem alterações: arquivo idêntico ao último aplicado", id, tipo);
+                return job.toDTO();
+            }
+
+            if (tipo == TipoImportacao.CLINICAS) {
+                for (ImportacaoJob anterior : jobs.values()) {
+                    if (anterior.descartarSeNaFila(job)) {
+                        log.info("Importação {} ({}) descartada: substituída pela importação {}",
+                                anterior.getId(), anterior.getTipo(), id);
+                        apagarArquivo(anterior);
+                    }
+                }
+            }
+            jobs.put(id, job);
+            removerJobsAntigos();
+        }
+
+        executor.execute(() -> executar(job));
+        log.debug("Importação {} ({}) enfileirada: {}", id, tipo, file.getOriginalFilename());
+        return job.toDTO();
+    }
+
+    public Optional<ImportacaoJobDTO> consultar(UUID id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id)).map(ImportacaoJob::toDTO);
+        }
+    }
+
+    private void executar(ImportacaoJob job) {
+        if (!job.iniciar()) {
+            return;
+        }
+        try {
+            ResultadoImportacao resultado = switch (job.getTipo()) {
+                case CLINICAS -> clinicaService.addClinicaFromFile(job.getArquivo(), job.getModo(), job);
+                case PROCEDIMENTOS -> excelProcessorProced.importarProcedimentos(job.getArquivo(), job);
+            };
+            registrarAplicacao(job);
+            job.concluir(resultado);
+            log.debug("Importação {} concluída", job.getId());
+        } catch (Exception e) {
+            log.error("Erro na importação {}: {}", job.getId(), e.getMessage(), e);
+            job.falhar(e);
+        } finally {
+            apagarArquivo(job);
+        }
+    }
+
+    private String gravarComHash(MultipartFile file, Path destino) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+        try (InputStream entrada = new DigestInputStream(file.getInputStream(), sha256)) {
+            Files.copy(entrada, destino);
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private boolean haJobsPendentes() {
+        for (ImportacaoJob job : jobs.values()) {
+            FaseImportacao fase = job.getFase();
+            if (fase == FaseImportacao.NA_FILA || fase == FaseImportacao.LENDO || fase == FaseImportacao.GRAVANDO) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // O mesmo arquivo pedido em outro modo é reaplicado: quem troca o modo quer a gravação nele
+    private boolean arquivoJaAplicado(TipoImportacao tipo, String hash, ModoImportacao modo) {
+        return importacaoAplicadaRepository.findById(tipo)
+                .map(aplicada -> aplicada.getHash().equals(hash) && aplicada.getModo() == modo)
+                .orElse(false);
+    }
+
+    /**
+     * Guarda o hash do arquivo aplicado. Cada tipo de importação altera dados que o outro também
+     * grava, então o hash do outro tipo deixa de descrever o guia e é removido.
+     */
+    private void registrarAplicacao(ImportacaoJob job) {
+        try {
+            for (TipoImportacao tipo : TipoImportacao.values()) {
+                if (tipo != job.getTipo()) {
+                    importacaoAplicadaRepository.deleteById(tipo);
+                }
+            }
+            importacaoAplicadaRepository.save(ImportacaoAplicada.builder()
+                    .tipo(job.getTipo())
+                    .hash(job.getHash())
+                    .modo(job.getModo())
+                    .arquivo(job.getNomeArquivo())
+                    .aplicadaEm(Instant.now())
+                    .build());
+        } catch (Exception e) {
+            // Sem o registro, o próximo upload idêntico só é reaplicado
+            log.warn("Não foi possível registrar o hash da importação {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    private void removerJobsAntigos() {
+        Iterator<ImportacaoJob> iterator = jobs.values().iterator();
+        while (jobs.size() > JOBS_RETIDOS && iterator.hasNext()) {
+            ImportacaoJob job = iterator.next();
+            if (job.getConcluidoEm() != null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void apagarArquivo(ImportacaoJob job) {
+        try {
+            Files.deleteIfExists(job.getArquivo());
+        } catch (IOException e) {
+            log.warn("Não foi possível apagar o arquivo {}: {}", job.getArquivo(), e.getMessage());
+        }
+    }
+
+    private static String extensao(String nomeArquivo) {
+        if (nomeArquivo == null) {
+            return "";
+        }
+        int ponto = nomeArquivo.lastIndexOf('.');
+        String extensao = ponto >= 0 ? nomeArquivo.substring(ponto).toLowerCase() : "";
+        // Só a extensão do nome enviado pelo cliente é usada, e apenas se for alfanumérica
+        return extensao.matches("\\.[a-z0-9]{1,8}") ? extensao : "";
+    }
+}
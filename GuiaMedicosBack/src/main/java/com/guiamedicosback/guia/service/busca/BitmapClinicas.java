@@ -0,0 +1,151 @@
+package com.guiamedicosback.guia.service.busca;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de clínicas do {@link SnapshotGuia}, pelas posições delas no snapshot (de 0 a
+ * {@code total - 1}). Como nos contêineres do Roaring, o conjunto esparso fica num array ordenado
+ * de posições e o denso num bitmap de {@code long}s, o que ocupar menos: um valor presente em
+ * poucas clínicas não paga um bit por clínica do guia.
+ * <p>
+ * O resultado de uma busca é um bitmap simples ({@code long[]} com {@link #palavras(int)}
+ * posições), contra o qual os conjuntos são contados, intersectados, unidos e subtraídos.
+ */
+final class BitmapClinicas {
+
+    // Exatamente um dos dois é não nulo
+    private final int[] posicoes;
+    private final long[] palavras;
+    private final int cardinalidade;
+
+    private BitmapClinicas(int[] posicoes, long[] palavras, int cardinalidade) {
+        this.posicoes = posicoes;
+        this.palavras = palavras;
+        this.cardinalidade = cardinalidade;
+    }
+
+    /**
+     * @param posicoes posições em ordem crescente, sem repetição
+     * @param total    número de clínicas do snapshot
+     */
+    static BitmapClinicas de(int[] posicoes, int total) {
+        // O array gasta 32 bits por clínica do conjunto; o bitmap, 1 bit por clínica do guia
+        if ((long) posicoes.length * Integer.SIZE < total) {
+            return new BitmapClinicas(posicoes, null, posicoes.length);
+        }
+        long[] palavras = new long[palavras(total)];
+        for (int posicao : posicoes) {
+            palavras[posicao >>> 6] |= 1L << posicao;
+        }
+        return new BitmapClinicas(null, palavras, posicoes.length);
+    }
+
+    static int palavras(int total) {
+        return (total + Long.SIZE - 1) >>> 6;
+    }
+
+    static void marcar(long[] bitmap, int posicao) {
+        bitmap[posicao >>> 6] |= 1L << posicao;
+    }
+
+    static boolean marcado(long[] bitmap, int posicao) {
+        return (bitmap[posicao >>> 6] & (1L << posicao)) != 0;
+    }
+
+    // Bitmap com as posições de 0 a total - 1
+    static long[] todas(int total) {
+        long[] bitmap = new long[palavras(total)];
+        Arrays.fill(bitmap, -1L);
+        if (total % Long.SIZE != 0) {
+            bitmap[bitmap.length - 1] = -1L >>> (Long.SIZE - total % Long.SIZE);
+        }
+        return bitmap;
+    }
+
+    static boolean vazio(long[] bitmap) {
+        for (long palavra : bitmap) {
+            if (palavra != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int cardinalidade() {
+        return cardinalidade;
+    }
+
+    /**
+     * Bitmap com as clínicas do conjunto, para ser reduzido pelas operações seguintes.
+     */
+    long[] copiar(int total) {
+        if (palavras != null) {
+            return palavras.clone();
+        }
+        long[] bitmap = new long[palavras(total)];
+        for (int posicao : posicoes) {
+            marcar(bitmap, posicao);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Deixa no resultado só as clínicas que também estão no conjunto.
+     */
+    void intersectarEm(long[] resultado) {
+        if (palavras != null) {
+            for (int i = 0; i < palavras.length; i++) {
+                resultado[i] &= palavras[i];
+            }
+            return;
+        }
+        long[] mantidas = new long[resultado.length];
+        for (int posicao : posicoes) {
+            mantidas[posicao >>> 6] |= resultado[posicao >>> 6] & (1L << posicao);
+        }
+        System.arraycopy(mantidas, 0, resultado, 0, resultado.length);
+    }
+
+    void unirEm(long[] resultado) {
+        if (palavras != null) {
+            for (int i = 0; i < palavras.length; i++) {
+                resultado[i] |= palavras[i];
+            }
+            return;
+        }
+        for (int posicao : posicoes) {
+            marcar(resultado, posicao);
+        }
+    }
+
+    void removerDe(long[] resultado) {
+        if (palavras != null) {
+            for (int i = 0; i < palavras.length; i++) {
+                resultado[i] &= ~palavras[i];
+            }
+            return;
+        }
+        for (int posicao : posicoes) {
+            resultado[posicao >>> 6] &= ~(1L << posicao);
+        }
+    }
+
+    /**
+     * Quantas clínicas do conjunto estão também no resultado.
+     */
+    int contarEm(long[] resultado) {
+        int total = 0;
+        if (posicoes != null) {
+            for (int posicao : posicoes) {
+                if ((resultado[posicao >>> 6] & (1L << posicao)) != 0) {
+                    total++;
+                }
+            }
+        } else {
+            for (int i = 0; i < palavras.length; i++) {
+                total += Long.bitCount(palavras[i] & resultado[i]);
+            }
+        }
+        return total;
+    }
+}
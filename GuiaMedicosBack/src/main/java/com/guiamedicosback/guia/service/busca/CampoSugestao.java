@@ -0,0 +1,30 @@
+package com.guiamedicosback.guia.service.busca;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Campos com sugestões de preenchimento ({@link IndiceSugestoes}).
+ */
+public enum CampoSugestao {
+    NOME,
+    MUNICIPIO,
+    GRUPO,
+    SUBGRUPO,
+    PROCEDIMENTO;
+
+    /**
+     * Campo pelo nome, sem diferenciar maiúsculas ({@code "procedimento"} ou {@code "PROCEDIMENTO"}).
+     *
+     * @throws IllegalArgumentException se o nome não corresponde a nenhum campo
+     */
+    public static CampoSugestao de(String nome) {
+        try {
+            return valueOf(nome.trim().toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Campo inválido: " + nome + ". Use um de: "
+                    + Arrays.stream(values()).map(c -> c.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", ")));
+        }
+    }
+}
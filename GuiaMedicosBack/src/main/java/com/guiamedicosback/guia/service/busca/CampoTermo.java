@@ -0,0 +1,11 @@
+package com.guiamedicosback.guia.service.busca;
+
+/**
+ * Campos aceitos nos termos da {@link ConsultaBooleana}.
+ */
+public enum CampoTermo {
+    MUNICIPIO,
+    GRUPO,
+    SUBGRUPO,
+    PROCEDIMENTO
+}
@@ -0,0 +1,126 @@
+package com.guiamedicosback.guia.service.busca;
+
+import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Procedimento;
+import com.guiamedicosback.guia.entity.Subgrupo;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Traduz os {@link FiltrosBusca} para a {@link Specification} da busca no banco.
+ * <p>
+ * A consulta principal lê só {@code clinica}: os critérios sobre a árvore viram um único
+ * semi-join ({@code IN} com subconsulta), com um caminho de join por associação. Grupo, subgrupo
+ * e procedimento valem para o mesmo ramo da árvore: a clínica precisa ter um subgrupo cujo nome
+ * contém o critério, dentro de um grupo cujo nome contém o critério, com o procedimento pedido.
+ * Como a clínica nunca é multiplicada por joins, cada uma aparece no máximo uma vez e a consulta
+ * dispensa o {@code DISTINCT}. O procedimento é comparado pelo id no catálogo, não pelo nome.
+ * <p>
+ * Os critérios são trechos literais, como no snapshot em memória: {@code %} e {@code _} vão
+ * escapados no {@code LIKE} e não funcionam como curingas.
+ */
+public final class CompiladorBusca {
+
+    // Escape dos curingas no padrão do LIKE; a barra invertida teria de ser escapada de novo no
+    // literal SQL do MySQL
+    private static final char ESCAPE = '!';
+
+    private CompiladorBusca() {
+    }
+
+    /**
+     * @param procedimentoId id no catálogo do procedimento dos filtros; nulo se o nome não está no
+     *                       catálogo, e então nenhuma clínica o tem. Ignorado sem esse critério
+     */
+    public static Specification<Clinica> compilar(FiltrosBusca filtros, Integer procedimentoId) {
+        return (root, query, cb) -> {
+            List<Predicate> condicoes = new ArrayList<>();
+
+            // As restrições por ids saem do snapshot e são aplicadas nele; como IN, passariam do
+            // limite de parâmetros do banco num guia grande
+            if (filtros.ids() != null) {
+                throw new IllegalStateException("Filtros restritos por ids só podem ser avaliados no snapshot");
+            }
+
+            // Filtros sobre as formas canônicas: "clinica" encontra "Clínica"
+            if (filtros.nome() != null) {
+                condicoes.add(like(cb, root.get("nomeCanonico"), filtros.nome()));
+            }
+            if (filtros.municipio() != null) {
+                condicoes.add(like(cb, root.get("municipioCanonico"), filtros.municipio()));
+            }
+            if (filtros.endereco() != null) {
+                condicoes.add(like(cb, root.get("enderecoCanonico"), filtros.endereco()));
+            }
+
+            if (filtros.procedimento() != null && procedimentoId == null) {
+                return cb.disjunction();
+            }
+            if (filtros.grupo() != null || filtros.subgrupo() != null || filtros.procedimento() != null) {
+                condicoes.add(naArvore(filtros, procedimentoId, root, query, cb));
+            }
+
+            return condicoes.isEmpty() ? null : cb.and(condicoes.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Os critérios da árvore como um semi-join só: {@code clinica.id IN (SELECT grupo.clinica_id
+     * FROM subgrupo JOIN grupo JOIN procedimentos WHERE ...)}, com todos os critérios sobre o mesmo
+     * caminho de joins pelas chaves estrangeiras. A subconsulta não depende da clínica, então o banco
+     * a resolve uma vez a partir do critério mais seletivo (o id do procedimento é indexado), em vez
+     * de sondar a árvore a cada clínica como um {@code EXISTS} correlacionado. Só com o critério de
+     * grupo o subgrupo não entra, para que grupos sem subgrupos continuem sendo encontrados.
+     */
+    private static Predicate naArvore(FiltrosBusca filtros, Integer procedimentoId, Root<Clinica> root,
+                                      CriteriaQuery<?> query, CriteriaBuilder cb) {
+        Subquery<Long> ramo = query.subquery(Long.class);
+        List<Predicate> condicoes = new ArrayList<>();
+        Path<Long> clinicaId;
+        if (filtros.subgrupo() == null && filtros.procedimento() == null) {
+            Root<Grupo> grupo = ramo.from(Grupo.class);
+            clinicaId = grupo.get("clinica").get("id");
+            condicoes.add(like(cb, grupo.get("nomeCanonico"), filtros.grupo()));
+        } else {
+            Root<Subgrupo> subgrupo = ramo.from(Subgrupo.class);
+            Join<Subgrupo, Grupo> grupo = subgrupo.join("grupo");
+            clinicaId = grupo.get("clinica").get("id");
+            if (filtros.grupo() != null) {
+                condicoes.add(like(cb, grupo.get("nomeCanonico"), filtros.grupo()));
+            }
+            if (filtros.subgrupo() != null) {
+                condicoes.add(like(cb, subgrupo.get("nomeCanonico"), filtros.subgrupo()));
+            }
+            if (filtros.procedimento() != null) {
+                Join<Subgrupo, Procedimento> procedimento = subgrupo.join("procedimentos");
+                condicoes.add(cb.equal(procedimento.get("catalogo").get("id"), procedimentoId));
+            }
+        }
+        ramo.select(clinicaId).where(condicoes.toArray(Predicate[]::new));
+        return root.get("id").in(ramo);
+    }
+
+    // A coluna contém o trecho literalmente
+    private static Predicate like(CriteriaBuilder cb, Expression<String> coluna, String trecho) {
+        StringBuilder padrao = new StringBuilder(trecho.length() + 2).append('%');
+        for (int i = 0; i < trecho.length(); i++) {
+            char c = trecho.charAt(i);
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                padrao.append(ESCAPE);
+            }
+            padrao.append(c);
+        }
+        return cb.like(coluna, padrao.append('%').toString(), ESCAPE);
+    }
+}
@@ -0,0 +1,68 @@
+package com.guiamedicosback.guia.service.busca;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.canonico;
+
+/**
+ * Combinação de termos {@code campo:valor} da busca: a clínica precisa ter todos os termos de
+ * {@code todos}, ao menos um de {@code algum} (se houver algum) e nenhum de {@code nenhum}. Um
+ * termo vale para a clínica inteira, em qualquer grupo ou subgrupo, e compara o valor inteiro
+ * pela forma canônica, como o filtro de procedimento.
+ * <p>
+ * É avaliada pelo {@link IndiceFacetas}, com os bitmaps de clínicas de cada valor.
+ */
+public record ConsultaBooleana(List<Termo> todos, List<Termo> algum, List<Termo> nenhum) {
+
+    public static final ConsultaBooleana VAZIA = new ConsultaBooleana(List.of(), List.of(), List.of());
+
+    /**
+     * Lê os termos no formato {@code campo:valor}, como {@code procedimento:hemograma}. Listas nulas
+     * valem como vazias.
+     *
+     * @throws IllegalArgumentException se algum termo não tem campo válido ou valor
+     */
+    public static ConsultaBooleana de(String[] todos, String[] algum, String[] nenhum) {
+        return new ConsultaBooleana(termos(todos), termos(algum), termos(nenhum));
+    }
+
+    public boolean vazia() {
+        return todos.isEmpty() && algum.isEmpty() && nenhum.isEmpty();
+    }
+
+    private static List<Termo> termos(String[] textos) {
+        if (textos == null) {
+            return List.of();
+        }
+        List<Termo> termos = new ArrayList<>(textos.length);
+        for (String texto : textos) {
+            termos.add(Termo.de(texto));
+        }
+        return List.copyOf(termos);
+    }
+
+    /**
+     * @param valor forma canônica do valor
+     */
+    public record Termo(CampoTermo campo, String valor) {
+
+        static Termo de(String texto) {
+            int separador = texto.indexOf(':');
+            String valor = separador >= 0 ? canonico(texto.substring(separador + 1)) : "";
+            if (valor.isEmpty()) {
+                throw new IllegalArgumentException("Termo inválido: " + texto + ". Use campo:valor, como procedimento:hemograma");
+            }
+            String campo = texto.substring(0, separador).trim().toUpperCase(Locale.ROOT);
+            try {
+                return new Termo(CampoTermo.valueOf(campo), valor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Campo inválido no termo " + texto + ". Use um de: "
+                        + Arrays.stream(CampoTermo.values()).map(c -> c.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", ")));
+            }
+        }
+    }
+}
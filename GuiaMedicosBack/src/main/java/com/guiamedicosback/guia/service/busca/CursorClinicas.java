@@ -0,0 +1,39 @@
+package com.guiamedicosback.guia.service.busca;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posição da última clínica de uma página: o valor do campo de ordenação e o id. A página
+ * seguinte começa logo depois dessa chave ({@code (campo, id) > (valor, id)}), então o custo da
+ * consulta não cresce com a profundidade da página, ao contrário de um OFFSET.
+ * <p>
+ * Para o cliente o cursor é opaco: base64 (URL-safe) da ordenação, do id e do valor.
+ */
+public record CursorClinicas(OrdenacaoClinicas ordenacao, String valor, long id) {
+
+    public String codificar() {
+        String texto = ordenacao.name() + '\n' + id + '\n' + valor;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException se o cursor é inválido ou foi gerado para outra ordenação
+     */
+    public static CursorClinicas decodificar(String cursor, OrdenacaoClinicas ordenacao) {
+        String[] partes;
+        try {
+            partes = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+        if (partes.length != 3 || !partes[0].equals(ordenacao.name())) {
+            throw new IllegalArgumentException("Cursor inválido para a ordenação " + ordenacao);
+        }
+        try {
+            return new CursorClinicas(ordenacao, partes[2], Long.parseLong(partes[1]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.guiamedicosback.guia.service.busca;
+
+import java.util.Arrays;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.canonico;
+
+/**
+ * Critérios da busca combinada, já na forma canônica. Um critério ausente ou vazio fica nulo e
+ * não filtra. Procedimento é comparado por igualdade; os demais, por "contém".
+ *
+ * @param ids restringe a busca a estas clínicas (ids em ordem crescente), como as encontradas pelo
+ *            {@link IndiceInvertido} para a consulta textual ou pela {@link ConsultaBooleana}; nulo
+ *            quando não há restrição
+ */
+public record FiltrosBusca(
+        String nome,
+        String municipio,
+        String endereco,
+        String procedimento,
+        String grupo,
+        String subgrupo,
+        int[] ids
+) {
+
+    public static final FiltrosBusca NENHUM = new FiltrosBusca(null, null, null, null, null, null, null);
+
+    public static FiltrosBusca de(String nome, String municipio, String endereco,
+                                  String procedimento, String grupo, String subgrupo) {
+        return new FiltrosBusca(criterio(nome), criterio(municipio), criterio(endereco),
+                criterio(procedimento), criterio(grupo), criterio(subgrupo), null);
+    }
+
+    /**
+     * Restringe também a estas clínicas (ids em ordem crescente), mantendo restrições anteriores.
+     */
+    public FiltrosBusca restritoA(int[] ids) {
+        return new FiltrosBusca(nome, municipio, endereco, procedimento, grupo, subgrupo,
+                this.ids == null ? ids : intersecao(this.ids, ids));
+    }
+
+    public boolean vazio() {
+        return nome == null && municipio == null && endereco == null
+                && procedimento == null && grupo == null && subgrupo == null && ids == null;
+    }
+
+    private static int[] intersecao(int[] a, int[] b) {
+        int[] comuns = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                comuns[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(comuns, n);
+    }
+
+    private static String criterio(String valor) {
+        return valor == null || valor.isEmpty() ? null : canonico(valor);
+    }
+}
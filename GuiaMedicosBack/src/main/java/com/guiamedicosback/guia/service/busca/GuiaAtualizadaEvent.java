@@ -0,0 +1,19 @@
+package com.guiamedicosback.guia.service.busca;
+
+/**
+ * Publicado quando o guia muda (importação ou edição manual). Ouvintes que mantêm cópias do guia
+ * em memória o tratam depois do commit da transação que o publicou.
+ *
+ * @param origem      descrição da alteração, usada só em log
+ * @param guiaInteiro se o guia inteiro pode ter mudado (importações), e não só algumas clínicas
+ */
+public record GuiaAtualizadaEvent(String origem, boolean guiaInteiro) {
+
+    public static GuiaAtualizadaEvent guiaInteiro(String origem) {
+        return new GuiaAtualizadaEvent(origem, true);
+    }
+
+    public static GuiaAtualizadaEvent edicao(String origem) {
+        return new GuiaAtualizadaEvent(origem, false);
+    }
+}
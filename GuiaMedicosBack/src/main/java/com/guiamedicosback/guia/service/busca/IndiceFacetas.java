@@ -0,0 +1,234 @@
+package com.guiamedicosback.guia.service.busca;
+
+import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
+import com.guiamedicosback.guia.entity.dto.FacetaDTO;
+import com.guiamedicosback.guia.entity.dto.FacetasDTO;
+import com.guiamedicosback.guia.entity.dto.GrupoDTO;
+import com.guiamedicosback.guia.entity.dto.SubgrupoDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.canonico;
+
+/**
+ * Para cada município, grupo, subgrupo e procedimento (pela forma canônica), o
+ * {@link BitmapClinicas} das clínicas que o têm. Contar uma faceta para um resultado é
+ * intersectar o bitmap do resultado com o de cada valor; avaliar uma {@link ConsultaBooleana} é
+ * intersectar, unir e subtrair os bitmaps dos seus termos. Nenhum dos dois consulta o banco.
+ * <p>
+ * Imutável e montado junto com o {@link SnapshotGuia}; as posições são as das clínicas na lista
+ * recebida.
+ */
+public final class IndiceFacetas {
+
+    private final Faceta municipios;
+    private final Faceta grupos;
+    private final Faceta subgrupos;
+    // Só para a consulta booleana: não é devolvido como faceta
+    private final Faceta procedimentos;
+    // Id da clínica em cada posição
+    private final int[] ids;
+
+    private IndiceFacetas(List<ClinicaDTO> clinicas) {
+        ids = new int[clinicas.size()];
+        Map<String, Valor> municipios = new HashMap<>();
+        Map<String, Valor> grupos = new HashMap<>();
+        Map<String, Valor> subgrupos = new HashMap<>();
+        Map<String, Valor> procedimentos = new HashMap<>();
+        for (int i = 0; i < clinicas.size(); i++) {
+            ClinicaDTO clinica = clinicas.get(i);
+            ids[i] = Math.toIntExact(clinica.id());
+            adicionar(municipios, clinica.municipio(), i);
+            for (GrupoDTO grupo : clinica.grupos()) {
+                adicionar(grupos, grupo.nome(), i);
+                for (SubgrupoDTO subgrupo : grupo.subgrupos()) {
+                    adicionar(subgrupos, subgrupo.nome(), i);
+                    for (String procedimento : subgrupo.procedimentos()) {
+                        adicionar(procedimentos, procedimento, i);
+                    }
+                }
+            }
+        }
+        this.municipios = Faceta.de(municipios, ids.length);
+        this.grupos = Faceta.de(grupos, ids.length);
+        this.subgrupos = Faceta.de(subgrupos, ids.length);
+        this.procedimentos = Faceta.de(procedimentos, ids.length);
+    }
+
+    public static IndiceFacetas de(List<ClinicaDTO> clinicas) {
+        return new IndiceFacetas(clinicas);
+    }
+
+    /**
+     * Facetas das clínicas marcadas no resultado, um bitmap com
+     * {@link BitmapClinicas#palavras(int)} posições.
+     */
+    public FacetasDTO contar(long[] resultado) {
+        return FacetasDTO.builder()
+                .municipios(municipios.contar(resultado))
+                .grupos(grupos.contar(resultado))
+                .subgrupos(subgrupos.contar(resultado))
+                .build();
+    }
+
+    /**
+     * Facetas de todas as clínicas, sem intersecção.
+     */
+    public FacetasDTO contarTodas() {
+        return FacetasDTO.builder()
+                .municipios(municipios.contar(null))
+                .grupos(grupos.contar(null))
+                .subgrupos(subgrupos.contar(null))
+                .build();
+    }
+
+    /**
+     * Ids, em ordem crescente, das clínicas que atendem à consulta. Os termos de {@code todos} são
+     * intersectados do menor conjunto para o maior, e a avaliação para assim que o resultado fica
+     * vazio: cada termo a mais só pode reduzir o trabalho dos seguintes.
+     */
+    public int[] avaliar(ConsultaBooleana consulta) {
+        long[] resultado = todos(consulta.todos());
+        if (resultado == null) {
+            return new int[0];
+        }
+        if (!consulta.algum().isEmpty() && !BitmapClinicas.vazio(resultado)) {
+            long[] algum = new long[resultado.length];
+            for (ConsultaBooleana.Termo termo : consulta.algum()) {
+                BitmapClinicas clinicas = bitmap(termo);
+                if (clinicas != null) {
+                    clinicas.unirEm(algum);
+                }
+            }
+            for (int i = 0; i < resultado.length; i++) {
+                resultado[i] &= algum[i];
+            }
+        }
+        for (ConsultaBooleana.Termo termo : consulta.nenhum()) {
+            BitmapClinicas clinicas = bitmap(termo);
+            if (clinicas != null) {
+                clinicas.removerDe(resultado);
+            }
+        }
+        return ids(resultado);
+    }
+
+    // Intersecção dos termos, ou todas as clínicas sem termos; nulo se algum termo não existe no guia
+    private long[] todos(List<ConsultaBooleana.Termo> termos) {
+        if (termos.isEmpty()) {
+            return BitmapClinicas.todas(ids.length);
+        }
+        List<BitmapClinicas> conjuntos = new ArrayList<>(termos.size());
+        for (ConsultaBooleana.Termo termo : termos) {
+            BitmapClinicas clinicas = bitmap(termo);
+            if (clinicas == null) {
+                return null;
+            }
+            conjuntos.add(clinicas);
+        }
+        conjuntos.sort(Comparator.comparingInt(BitmapClinicas::cardinalidade));
+        long[] resultado = conjuntos.getFirst().copiar(ids.length);
+        for (int i = 1; i < conjuntos.size() && !BitmapClinicas.vazio(resultado); i++) {
+            conjuntos.get(i).intersectarEm(resultado);
+        }
+        return resultado;
+    }
+
+    private BitmapClinicas bitmap(ConsultaBooleana.Termo termo) {
+        Faceta faceta = switch (termo.campo()) {
+            case MUNICIPIO -> municipios;
+            case GRUPO -> grupos;
+            case SUBGRUPO -> subgrupos;
+            case PROCEDIMENTO -> procedimentos;
+        };
+        return faceta.bitmap(termo.valor());
+    }
+
+    private int[] ids(long[] resultado) {
+        int total = 0;
+        for (long palavra : resultado) {
+            total += Long.bitCount(palavra);
+        }
+        int[] encontrados = new int[total];
+        int n = 0;
+        for (int i = 0; i < resultado.length; i++) {
+            for (long palavra = resultado[i]; palavra != 0; palavra &= palavra - 1) {
+                encontrados[n++] = ids[(i << 6) + Long.numberOfTrailingZeros(palavra)];
+            }
+        }
+        Arrays.sort(encontrados);
+        return encontrados;
+    }
+
+    // Uma clínica entra uma vez por valor, mesmo que o tenha em vários grupos
+    private static void adicionar(Map<String, Valor> valores, String texto, int clinica) {
+        String chave = canonico(texto);
+        if (chave.isEmpty()) {
+            return;
+        }
+        Valor valor = valores.computeIfAbsent(chave, _ -> new Valor(texto.strip()));
+        if (valor.total == 0 || valor.posicoes[valor.total - 1] != clinica) {
+            valor.adicionar(clinica);
+        }
+    }
+
+    private static final class Valor {
+        // Primeira grafia encontrada
+        private final String texto;
+        private int[] posicoes = new int[4];
+        private int total;
+
+        Valor(String texto) {
+            this.texto = texto;
+        }
+
+        void adicionar(int posicao) {
+            if (total == posicoes.length) {
+                posicoes = Arrays.copyOf(posicoes, total * 2);
+            }
+            posicoes[total++] = posicao;
+        }
+    }
+
+    /**
+     * Valores de uma faceta em ordem canônica, com o texto exibido e o bitmap de cada um.
+     */
+    private record Faceta(String[] chaves, String[] textos, BitmapClinicas[] clinicas) {
+
+        static Faceta de(Map<String, Valor> valores, int totalClinicas) {
+            String[] chaves = valores.keySet().toArray(String[]::new);
+            Arrays.sort(chaves);
+            String[] textos = new String[chaves.length];
+            BitmapClinicas[] clinicas = new BitmapClinicas[chaves.length];
+            for (int i = 0; i < chaves.length; i++) {
+                Valor valor = valores.get(chaves[i]);
+                textos[i] = valor.texto;
+                clinicas[i] = BitmapClinicas.de(Arrays.copyOf(valor.posicoes, valor.total), totalClinicas);
+            }
+            return new Faceta(chaves, textos, clinicas);
+        }
+
+        BitmapClinicas bitmap(String chave) {
+            int posicao = Arrays.binarySearch(chaves, chave);
+            return posicao >= 0 ? clinicas[posicao] : null;
+        }
+
+        // Resultado nulo conta todas as clínicas; empates ficam na ordem canônica
+        List<FacetaDTO> contar(long[] resultado) {
+            List<FacetaDTO> contagens = new ArrayList<>();
+            for (int i = 0; i < textos.length; i++) {
+                int total = resultado != null ? clinicas[i].contarEm(resultado) : clinicas[i].cardinalidade();
+                if (total > 0) {
+                    contagens.add(FacetaDTO.builder().valor(textos[i]).clinicas(total).build());
+                }
+            }
+            contagens.sort(Comparator.comparingInt(FacetaDTO::clinicas).reversed());
+            return contagens;
+        }
+    }
+}
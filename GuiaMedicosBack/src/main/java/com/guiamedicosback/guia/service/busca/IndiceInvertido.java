@@ -0,0 +1,272 @@
+package com.guiamedicosback.guia.service.busca;
+
+import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
+import com.guiamedicosback.guia.entity.dto.GrupoDTO;
+import com.guiamedicosback.guia.entity.dto.SubgrupoDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.termos;
+
+/**
+ * Índice invertido do guia para a busca textual ({@code q}): cada termo canônico (sem acento, em
+ * minúsculas, ver {@code Canonicalizador#termos}) de nome, município, endereço, grupos, subgrupos e
+ * procedimentos aponta para a lista ordenada dos ids das clínicas que o contêm.
+ * <p>
+ * Os termos ficam num mapa ordenado, então a busca por prefixo é um intervalo do mapa. Uma consulta
+ * com vários termos devolve a interseção: cada termo da consulta casa com os termos do índice que
+ * começam com ele ("cardio" encontra "cardiologia").
+ * <p>
+ * Imutável e montado junto com o {@link SnapshotGuia}, então a busca textual e os demais filtros
+ * sempre leem a mesma versão do guia. Sem snapshot anterior (na inicialização e depois de
+ * importações), ou quando a maioria das clínicas mudou (as cargas em massa dão ids novos a todas),
+ * o índice é montado inteiro. Nas edições manuais, o índice do snapshot anterior é copiado e só as
+ * clínicas que mudaram são reindexadas.
+ */
+public final class IndiceInvertido {
+
+    private static final int[] NENHUMA = new int[0];
+
+    private final TreeMap<String, int[]> postings;
+    // Termos de cada clínica, para removê-los das listas quando ela muda
+    private final Map<Integer, String[]> termosPorClinica;
+
+    private IndiceInvertido(TreeMap<String, int[]> postings, Map<Integer, String[]> termosPorClinica) {
+        this.postings = postings;
+        this.termosPorClinica = termosPorClinica;
+    }
+
+    /**
+     * @param clinicas clínicas na ordem do id, já congeladas pelo snapshot
+     * @param anterior snapshot cujo índice pode ser reaproveitado, ou {@code null} para montar
+     *                 o índice inteiro
+     */
+    static IndiceInvertido de(List<ClinicaDTO> clinicas, SnapshotGuia anterior) {
+        if (anterior == null) {
+            return de(clinicas);
+        }
+        // Os DTOs do snapshot são records imutáveis: igualdade de valor quer dizer clínica inalterada
+        List<ClinicaDTO> alteradas = new ArrayList<>();
+        Set<Long> ids = HashSet.newHashSet(clinicas.size());
+        for (ClinicaDTO clinica : clinicas) {
+            ids.add(clinica.id());
+            if (!clinica.equals(anterior.porId(clinica.id()).orElse(null))) {
+                alteradas.add(clinica);
+            }
+        }
+        List<Integer> removidas = new ArrayList<>();
+        for (ClinicaDTO clinica : anterior.clinicas()) {
+            if (!ids.contains(clinica.id())) {
+                removidas.add(Math.toIntExact(clinica.id()));
+            }
+        }
+        // Reindexar clínica por clínica copia a lista de cada termo: com muitas alterações,
+        // montar o índice de novo custa menos
+        if (alteradas.size() + removidas.size() > clinicas.size() / 2) {
+            return de(clinicas);
+        }
+        return anterior.indiceTextual().com(alteradas, removidas);
+    }
+
+    /**
+     * Ids (em ordem crescente) das clínicas que contêm todos os termos da consulta, cada um como
+     * prefixo de algum termo da clínica. Uma consulta sem termos não encontra nada.
+     */
+    public int[] buscar(String consulta) {
+        List<String> termosConsulta = new ArrayList<>(new LinkedHashSet<>(termos(consulta)));
+        if (termosConsulta.isEmpty()) {
+            return NENHUMA;
+        }
+
+        List<int[]> listas = new ArrayList<>(termosConsulta.size());
+        for (String termo : termosConsulta) {
+            int[] ids = comPrefixo(termo);
+            if (ids.length == 0) {
+                return NENHUMA;
+            }
+            listas.add(ids);
+        }
+        // Começa pela lista mais curta: a interseção nunca fica maior que ela
+        listas.sort(Comparator.comparingInt(ids -> ids.length));
+        int[] resultado = listas.getFirst();
+        for (int i = 1; i < listas.size() && resultado.length > 0; i++) {
+            resultado = intersecao(resultado, listas.get(i));
+        }
+        return resultado;
+    }
+
+    // As clínicas vêm em ordem crescente de id, então cada lista já sai ordenada
+    private static IndiceInvertido de(List<ClinicaDTO> clinicas) {
+        Map<String, ListaIds> listas = new HashMap<>();
+        Map<Integer, String[]> termosPorClinica = HashMap.newHashMap(clinicas.size());
+        for (ClinicaDTO clinica : clinicas) {
+            int id = Math.toIntExact(clinica.id());
+            Set<String> termos = termosDa(clinica);
+            for (String termo : termos) {
+                listas.computeIfAbsent(termo, _ -> new ListaIds()).adicionar(id);
+            }
+            termosPorClinica.put(id, termos.toArray(String[]::new));
+        }
+        TreeMap<String, int[]> postings = new TreeMap<>();
+        listas.forEach((termo, ids) -> postings.put(termo, ids.toArray()));
+        return new IndiceInvertido(postings, termosPorClinica);
+    }
+
+    /**
+     * Cópia deste índice com as clínicas alteradas reindexadas e as removidas retiradas.
+     */
+    private IndiceInvertido com(List<ClinicaDTO> alteradas, List<Integer> removidas) {
+        IndiceInvertido copia = new IndiceInvertido(new TreeMap<>(postings), new HashMap<>(termosPorClinica));
+        for (ClinicaDTO clinica : alteradas) {
+            copia.indexar(Math.toIntExact(clinica.id()), termosDa(clinica));
+        }
+        for (int id : removidas) {
+            copia.remover(id);
+        }
+        return copia;
+    }
+
+    private int[] comPrefixo(String prefixo) {
+        NavigableMap<String, int[]> intervalo = postings.subMap(prefixo, true, prefixo + Character.MAX_VALUE, false);
+        if (intervalo.isEmpty()) {
+            return NENHUMA;
+        }
+        if (intervalo.size() == 1) {
+            return intervalo.firstEntry().getValue();
+        }
+        return uniao(intervalo.values());
+    }
+
+    // indexar e remover só alteram a cópia montada por com, antes de ela ser publicada
+    private void indexar(int id, Set<String> termos) {
+        remover(id);
+        for (String termo : termos) {
+            postings.merge(termo, new int[]{id}, (ids, _) -> comId(ids, id));
+        }
+        termosPorClinica.put(id, termos.toArray(String[]::new));
+    }
+
+    private void remover(int id) {
+        String[] termos = termosPorClinica.remove(id);
+        if (termos == null) {
+            return;
+        }
+        for (String termo : termos) {
+            postings.computeIfPresent(termo, (_, ids) -> {
+                int[] restantes = semId(ids, id);
+                return restantes.length == 0 ? null : restantes;
+            });
+        }
+    }
+
+    private static int[] comId(int[] ids, int id) {
+        int posicao = Arrays.binarySearch(ids, id);
+        if (posicao >= 0) {
+            return ids;
+        }
+        int insercao = -posicao - 1;
+        int[] novo = new int[ids.length + 1];
+        System.arraycopy(ids, 0, novo, 0, insercao);
+        novo[insercao] = id;
+        System.arraycopy(ids, insercao, novo, insercao + 1, ids.length - insercao);
+        return novo;
+    }
+
+    private static int[] semId(int[] ids, int id) {
+        int posicao = Arrays.binarySearch(ids, id);
+        if (posicao < 0) {
+            return ids;
+        }
+        int[] novo = new int[ids.length - 1];
+        System.arraycopy(ids, 0, novo, 0, posicao);
+        System.arraycopy(ids, posicao + 1, novo, posicao, ids.length - posicao - 1);
+        return novo;
+    }
+
+    static Set<String> termosDa(ClinicaDTO clinica) {
+        Set<String> termos = new LinkedHashSet<>();
+        termos.addAll(termos(clinica.nome()));
+        termos.addAll(termos(clinica.municipio()));
+        termos.addAll(termos(clinica.endereco()));
+        if (clinica.grupos() != null) {
+            for (GrupoDTO grupo : clinica.grupos()) {
+                termos.addAll(termos(grupo.nome()));
+                for (SubgrupoDTO subgrupo : grupo.subgrupos()) {
+                    termos.addAll(termos(subgrupo.nome()));
+                    for (String procedimento : subgrupo.procedimentos()) {
+                        termos.addAll(termos(procedimento));
+                    }
+                }
+            }
+        }
+        return termos;
+    }
+
+    static int[] intersecao(int[] a, int[] b) {
+        int[] resultado = new int[Math.min(a.length, b.length)];
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                resultado[total++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return total == resultado.length ? resultado : Arrays.copyOf(resultado, total);
+    }
+
+    static int[] uniao(Collection<int[]> listas) {
+        int tamanho = 0;
+        for (int[] ids : listas) {
+            tamanho += ids.length;
+        }
+        int[] todos = new int[tamanho];
+        int posicao = 0;
+        for (int[] ids : listas) {
+            System.arraycopy(ids, 0, todos, posicao, ids.length);
+            posicao += ids.length;
+        }
+        Arrays.sort(todos);
+        int distintos = 0;
+        for (int i = 0; i < todos.length; i++) {
+            if (i == 0 || todos[i] != todos[i - 1]) {
+                todos[distintos++] = todos[i];
+            }
+        }
+        return Arrays.copyOf(todos, distintos);
+    }
+
+    // Lista de ids que cresce sem encaixotar os valores
+    private static final class ListaIds {
+        private int[] ids = new int[4];
+        private int tamanho;
+
+        void adicionar(int id) {
+            if (tamanho == ids.length) {
+                ids = Arrays.copyOf(ids, tamanho * 2);
+            }
+            ids[tamanho++] = id;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, tamanho);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.guiamedicosback.guia.service.busca;
+
+import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
+import com.guiamedicosback.guia.entity.dto.GrupoDTO;
+import com.guiamedicosback.guia.entity.dto.SubgrupoDTO;
+import com.guiamedicosback.guia.entity.dto.SugestaoDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.canonico;
+
+/**
+ * Sugestões de preenchimento da busca: para cada {@link CampoSugestao}, os valores distintos do
+ * guia (pela forma canônica) com o número de clínicas que os têm.
+ * <p>
+ * Cada campo é um array ordenado das formas canônicas, com o texto exibido e a contagem em arrays
+ * paralelos. Os valores que começam com um prefixo formam um intervalo contíguo, achado por busca
+ * binária; desse intervalo saem os {@code limite} mais frequentes. Imutável e montado junto com
+ * o {@link SnapshotGuia}, então acompanha cada importação e edição.
+ */
+public final class IndiceSugestoes {
+
+    private final Map<CampoSugestao, Valores> campos = new EnumMap<>(CampoSugestao.class);
+
+    private IndiceSugestoes(List<ClinicaDTO> clinicas) {
+        Map<CampoSugestao, Map<String, Contagem>> contagens = new EnumMap<>(CampoSugestao.class);
+        for (CampoSugestao campo : CampoSugestao.values()) {
+            contagens.put(campo, new HashMap<>());
+        }
+        for (int i = 0; i < clinicas.size(); i++) {
+            ClinicaDTO clinica = clinicas.get(i);
+            contar(contagens.get(CampoSugestao.NOME), clinica.nome(), i);
+            contar(contagens.get(CampoSugestao.MUNICIPIO), clinica.municipio(), i);
+            for (GrupoDTO grupo : clinica.grupos()) {
+                contar(contagens.get(CampoSugestao.GRUPO), grupo.nome(), i);
+                for (SubgrupoDTO subgrupo : grupo.subgrupos()) {
+                    contar(contagens.get(CampoSugestao.SUBGRUPO), subgrupo.nome(), i);
+                    for (String procedimento : subgrupo.procedimentos()) {
+                        contar(contagens.get(CampoSugestao.PROCEDIMENTO), procedimento, i);
+                    }
+                }
+            }
+        }
+        contagens.forEach((campo, valores) -> campos.put(campo, Valores.de(valores)));
+    }
+
+    public static IndiceSugestoes de(List<ClinicaDTO> clinicas) {
+        return new IndiceSugestoes(clinicas);
+    }
+
+    /**
+     * Os valores do campo que começam com o prefixo (sem diferenciar acentos e maiúsculas), do
+     * mais para o menos frequente; empates ficam em ordem alfabética. Prefixo vazio considera
+     * todos os valores.
+     */
+    public List<SugestaoDTO> sugerir(CampoSugestao campo, String prefixo, int limite) {
+        Valores valores = campos.get(campo);
+        String chave = canonico(prefixo);
+
+        // Posições dos melhores até aqui, do mais frequente para o menos
+        int[] melhores = new int[limite];
+        int total = 0;
+        for (int i = valores.inicio(chave); i < valores.chaves.length && valores.chaves[i].startsWith(chave); i++) {
+            int ocorrencias = valores.ocorrencias[i];
+            if (total == limite && ocorrencias <= valores.ocorrencias[melhores[total - 1]]) {
+                continue;
+            }
+            int posicao = total == limite ? total - 1 : total++;
+            // O intervalo vem em ordem alfabética: num empate, quem já está na lista fica na frente
+            while (posicao > 0 && valores.ocorrencias[melhores[posicao - 1]] < ocorrencias) {
+                melhores[posicao] = melhores[posicao - 1];
+                posicao--;
+            }
+            melhores[posicao] = i;
+        }
+
+        List<SugestaoDTO> sugestoes = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            sugestoes.add(SugestaoDTO.builder()
+                    .texto(valores.textos[melhores[i]])
+                    .ocorrencias(valores.ocorrencias[melhores[i]])
+                    .build());
+        }
+        return sugestoes;
+    }
+
+    public int totalValores(CampoSugestao campo) {
+        return campos.get(campo).chaves.length;
+    }
+
+    // Uma clínica conta uma vez por valor, mesmo que o tenha em vários grupos ou subgrupos
+    private static void contar(Map<String, Contagem> contagens, String texto, int clinica) {
+        String chave = canonico(texto);
+        if (chave.isEmpty()) {
+            return;
+        }
+        Contagem contagem = contagens.computeIfAbsent(chave, _ -> new Contagem(texto.strip()));
+        if (contagem.ultimaClinica != clinica) {
+            contagem.ultimaClinica = clinica;
+            contagem.ocorrencias++;
+        }
+    }
+
+    private static final class Contagem {
+        // Primeira grafia encontrada
+        private final String texto;
+        private int ocorrencias;
+        private int ultimaClinica = -1;
+
+        Contagem(String texto) {
+            this.texto = texto;
+        }
+    }
+
+    private record Valores(String[] chaves, String[] textos, int[] ocorrencias) {
+
+        static Valores de(Map<String, Contagem> contagens) {
+            String[] chaves = contagens.keySet().toArray(String[]::new);
+            Arrays.sort(chaves);
+            String[] textos = new String[chaves.length];
+            int[] ocorrencias = new int[chaves.length];
+            for (int i = 0; i < chaves.length; i++) {
+                Contagem contagem = contagens.get(chaves[i]);
+                textos[i] = contagem.texto;
+                ocorrencias[i] = contagem.ocorrencias;
+            }
+            return new Valores(chaves, textos, ocorrencias);
+        }
+
+        // Primeira posição cuja chave não é menor que o prefixo
+        int inicio(String prefixo) {
+            int posicao = Arrays.binarySearch(chaves, prefixo);
+            return posicao >= 0 ? posicao : -posicao - 1;
+        }
+    }
+}
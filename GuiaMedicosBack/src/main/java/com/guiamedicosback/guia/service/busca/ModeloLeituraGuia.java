@@ -0,0 +1,111 @@
+package com.guiamedicosback.guia.service.busca;
+
+import com.guiamedicosback.guia.repository.ClinicaRepository;
+import com.guiamedicosback.guia.service.ClinicaMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Modelo de leitura do guia em memória para as consultas públicas.
+ * <p>
+ * O guia só muda em importações e edições manuais, que publicam {@link GuiaAtualizadaEvent}.
+ * Depois do commit, um novo {@link SnapshotGuia} é montado numa thread própria e publicado com a
+ * troca de uma única referência volátil. As leituras só leem essa referência: não há lock nem
+ * acesso ao banco, e cada requisição vê um snapshot inteiro, nunca um meio-termo.
+ * <p>
+ * Enquanto não há snapshot pronto (na inicialização ou depois de uma reconstrução que falhou),
+ * {@link #atual()} retorna {@code null} e quem consulta recorre ao banco. Alterações que chegam
+ * durante uma reconstrução agendam mais uma, e várias alterações seguidas se juntam numa só.
+ * <p>
+ * Os índices do guia são montados dentro do snapshot, sem ler o banco de novo. Depois de edições
+ * manuais, o novo snapshot parte do anterior para reindexar só as clínicas que mudaram; depois de
+ * importações, tudo é montado do zero.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ModeloLeituraGuia {
+
+    private final ClinicaRepository clinicaRepository;
+    private final ClinicaMapper clinicaMapper;
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "modelo-leitura-guia"));
+    private final AtomicBoolean reconstrucaoAgendada = new AtomicBoolean();
+    // Se alguma alteração ainda não refletida num snapshot foi uma importação
+    private final AtomicBoolean guiaInteiroPendente = new AtomicBoolean();
+    // Alterações do guia notificadas desde a inicialização
+    private final AtomicLong alteracoes = new AtomicLong();
+    private volatile SnapshotGuia snapshot;
+
+    /**
+     * Snapshot publicado mais recente, ou {@code null} se ainda não há nenhum.
+     */
+    public SnapshotGuia atual() {
+        return snapshot;
+    }
+
+    /**
+     * Quantas alterações do guia já foram notificadas. Um snapshot publicado com essa mesma
+     * versão reflete o banco.
+     */
+    public long alteracoes() {
+        return alteracoes.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarInicial() {
+        agendarReconstrucao("inicialização");
+    }
+
+    // fallbackExecution: edições manuais publicam o evento fora de transação, já depois do commit
+    @TransactionalEventListener(fallbackExecution = true)
+    public void guiaAtualizado(GuiaAtualizadaEvent evento) {
+        if (evento.guiaInteiro()) {
+            guiaInteiroPendente.set(true);
+        }
+        alteracoes.incrementAndGet();
+        agendarReconstrucao(evento.origem());
+    }
+
+    @PreDestroy
+    void encerrar() {
+        executor.shutdownNow();
+    }
+
+    private void agendarReconstrucao(String origem) {
+        // Se já há uma reconstrução na fila, ela ainda vai ler o banco depois desta alteração
+        if (reconstrucaoAgendada.compareAndSet(false, true)) {
+            executor.execute(() -> reconstruir(origem));
+        }
+    }
+
+    private void reconstruir(String origem) {
+        reconstrucaoAgendada.set(false);
+        boolean guiaInteiro = guiaInteiroPendente.getAndSet(false);
+        long inicio = System.nanoTime();
+        try {
+            SnapshotGuia novo = SnapshotGuia.de(clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore()),
+                    objectMapper, guiaInteiro ? null : snapshot);
+            snapshot = novo;
+            log.info("Modelo de leitura do guia reconstruído ({}): {} clínicas em {} ms", origem,
+                    novo.totalClinicas(), (System.nanoTime() - inicio) / 1_000_000);
+        } catch (Exception e) {
+            // O snapshot anterior não reflete mais o banco: as leituras voltam ao banco até a
+            // próxima reconstrução bem-sucedida, que monta os índices do zero
+            snapshot = null;
+            log.error("Erro ao reconstruir o modelo de leitura do guia ({}): {}", origem, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.guiamedicosback.guia.service.busca;
+
+import java.io.Serial;
+
+/**
+ * A consulta depende do modelo de leitura em memória, que ainda não foi montado (inicialização)
+ * ou cuja última reconstrução falhou. Responder pelo banco exigiria ler o guia inteiro a cada
+ * requisição; o cliente deve tentar de novo em instantes.
+ */
+public class ModeloLeituraIndisponivelException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ModeloLeituraIndisponivelException(String mensagem) {
+        super(mensagem);
+    }
+}
@@ -0,0 +1,57 @@
+package com.guiamedicosback.guia.service.busca;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ordens estáveis da listagem paginada. Cada uma ordena pela forma canônica do campo (então
+ * "Ágape" fica junto de "Agape") e desempata pelo id, o que torna a ordem total e permite a
+ * paginação por chave ({@link CursorClinicas}).
+ * <p>
+ * O snapshot em memória e a consulta ao banco ordenam pela mesma regra, {@link #compararChaves},
+ * para que um cursor emitido por um caminho continue válido no outro.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum OrdenacaoClinicas {
+    NOME("nomeCanonico"),
+    MUNICIPIO("municipioCanonico");
+
+    /**
+     * Colação das chaves na consulta ao banco: binária sobre utf8mb4, por code point e com
+     * PAD SPACE, a mesma ordem de {@link #compararChaves}.
+     */
+    public static final String COLACAO_SQL = "utf8mb4_bin";
+
+    // Atributo da entidade Clinica usado na ordenação
+    private final String atributo;
+
+    /**
+     * Compara duas chaves como {@link #COLACAO_SQL}. {@link String#compareTo} compara unidades
+     * UTF-16, o que põe caracteres fora do BMP antes de U+E000..U+FFFF, e trata o prefixo como
+     * menor; no banco o code point decide e o texto mais curto é completado com espaços.
+     */
+    public static int compararChaves(String a, String b) {
+        int comum = Math.min(a.length(), b.length());
+        for (int i = 0; i < comum; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                // Surrogates representam code points acima de U+FFFF: vêm depois de todo o BMP
+                if (Character.isSurrogate(x) != Character.isSurrogate(y)) {
+                    return Character.isSurrogate(x) ? 1 : -1;
+                }
+                return x - y;
+            }
+        }
+        String maior = a.length() > b.length() ? a : b;
+        int sinal = maior == a ? 1 : -1;
+        for (int i = comum; i < maior.length(); i++) {
+            char c = maior.charAt(i);
+            if (c != ' ') {
+                return c < ' ' ? -sinal : sinal;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,50 @@
+package com.guiamedicosback.guia.service.busca;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Corpo de resposta já serializado em JSON (UTF-8) e, se valer a pena, também comprimido em gzip.
+ * <p>
+ * Cada representação tem sua ETag forte, derivada do SHA-256 do JSON: a versão gzip usa a mesma
+ * base com o sufixo {@code -gzip}, já que bytes diferentes não podem compartilhar uma ETag forte.
+ *
+ * @param gzip nulo quando o JSON é pequeno demais para compensar a compressão
+ */
+public record RespostaJson(byte[] json, byte[] gzip, String etag, String etagGzip) {
+
+    // Abaixo disso o gzip economiza pouco ou nada em relação aos cabeçalhos
+    private static final int MINIMO_PARA_GZIP = 1024;
+
+    public static RespostaJson de(byte[] json) {
+        String base = HexFormat.of().formatHex(sha256(json), 0, 16);
+        byte[] gzip = json.length >= MINIMO_PARA_GZIP ? comprimir(json) : null;
+        return new RespostaJson(json, gzip, '"' + base + '"', gzip != null ? '"' + base + "-gzip\"" : null);
+    }
+
+    private static byte[] comprimir(byte[] dados) {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(dados.length / 4);
+        // Comprimido uma vez por versão do guia e servido muitas: vale o nível máximo
+        try (GZIPOutputStream gzip = new GZIPOutputStream(saida) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(dados);
+        } catch (IOException e) {
+            // Só escreve em memória
+            throw new UncheckedIOException(e);
+        }
+        return saida.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] dados) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(dados);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
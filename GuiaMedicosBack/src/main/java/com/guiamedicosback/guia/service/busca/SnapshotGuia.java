@@ -0,0 +1,358 @@
+package com.guiamedicosback.guia.service.busca;
+
+import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
+import com.guiamedicosback.guia.entity.dto.FacetasDTO;
+import com.guiamedicosback.guia.entity.dto.GrupoDTO;
+import com.guiamedicosback.guia.entity.dto.PaginaClinicasDTO;
+import com.guiamedicosback.guia.entity.dto.SubgrupoDTO;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.canonico;
+
+/**
+ * Cópia imutável do guia inteiro, montada de uma vez e nunca alterada depois: as listas dos DTOs
+ * são imutáveis e os índices são calculados na construção. Por isso pode ser lida por qualquer
+ * número de threads sem sincronização.
+ * <p>
+ * Além da lista na ordem do id, mantém o índice por id e, para cada {@link OrdenacaoClinicas}, as
+ * posições das clínicas ordenadas por {@code (chave canônica, id)}, que servem a paginação por chave
+ * com busca binária. As formas canônicas de cada clínica são pré-calculadas, então a busca
+ * combinada compara strings prontas, com a mesma semântica da busca no banco. A listagem completa
+ * e o detalhe de cada clínica também ficam prontos em bytes ({@link RespostaJson}), as sugestões
+ * de preenchimento da busca num {@link IndiceSugestoes}, os bitmaps das facetas num
+ * {@link IndiceFacetas} e os termos da busca textual num {@link IndiceInvertido}.
+ */
+public final class SnapshotGuia {
+
+    private final List<ClinicaDTO> clinicas;
+    private final Entrada[] entradas;
+    private final Map<Long, ClinicaDTO> porId;
+    private final Map<OrdenacaoClinicas, int[]> ordens = new EnumMap<>(OrdenacaoClinicas.class);
+    private final RespostaJson respostaLista;
+    private final Map<Long, RespostaJson> respostasDetalhe;
+    private final IndiceSugestoes sugestoes;
+    private final IndiceFacetas facetas;
+    private final IndiceInvertido indiceTextual;
+    private final Instant geradoEm = Instant.now();
+
+    private SnapshotGuia(List<ClinicaDTO> clinicas, ObjectMapper json, SnapshotGuia anterior) {
+        List<ClinicaDTO> imutaveis = new ArrayList<>(clinicas.size());
+        entradas = new Entrada[clinicas.size()];
+        porId = HashMap.newHashMap(clinicas.size());
+        for (int i = 0; i < clinicas.size(); i++) {
+            ClinicaDTO clinica = congelar(clinicas.get(i));
+            imutaveis.add(clinica);
+            entradas[i] = Entrada.de(clinica);
+            porId.put(clinica.id(), clinica);
+        }
+        this.clinicas = List.copyOf(imutaveis);
+
+        for (OrdenacaoClinicas ordenacao : OrdenacaoClinicas.values()) {
+            Integer[] posicoes = new Integer[entradas.length];
+            for (int i = 0; i < posicoes.length; i++) {
+                posicoes[i] = i;
+            }
+            Arrays.sort(posicoes, Comparator
+                    .comparing((Integer i) -> entradas[i].chave(ordenacao), OrdenacaoClinicas::compararChaves)
+                    .thenComparingLong(i -> entradas[i].dto.id()));
+            ordens.put(ordenacao, Arrays.stream(posicoes).mapToInt(Integer::intValue).toArray());
+        }
+
+        // Respostas da listagem e do detalhe serializadas uma única vez por versão do guia
+        respostaLista = RespostaJson.de(json.writeValueAsBytes(this.clinicas));
+        respostasDetalhe = HashMap.newHashMap(clinicas.size());
+        for (ClinicaDTO clinica : this.clinicas) {
+            respostasDetalhe.put(clinica.id(), RespostaJson.de(json.writeValueAsBytes(clinica)));
+        }
+        sugestoes = IndiceSugestoes.de(this.clinicas);
+        facetas = IndiceFacetas.de(this.clinicas);
+        indiceTextual = IndiceInvertido.de(this.clinicas, anterior);
+    }
+
+    /**
+     * @param clinicas clínicas na ordem do id, como devolvidas pela projeção da árvore
+     * @param json     o mesmo mapper das respostas HTTP, para que os bytes pré-serializados sejam
+     *                 idênticos aos que a serialização sob demanda produziria
+     */
+    public static SnapshotGuia de(List<ClinicaDTO> clinicas, ObjectMapper json) {
+        return de(clinicas, json, null);
+    }
+
+    /**
+     * @param anterior snapshot da versão anterior do guia, cujo índice textual é copiado e
+     *                 atualizado só nas clínicas que mudaram, ou {@code null} para montá-lo inteiro
+     */
+    public static SnapshotGuia de(List<ClinicaDTO> clinicas, ObjectMapper json, SnapshotGuia anterior) {
+        return new SnapshotGuia(clinicas, json, anterior);
+    }
+
+    public List<ClinicaDTO> clinicas() {
+        return clinicas;
+    }
+
+    public Optional<ClinicaDTO> porId(long id) {
+        return Optional.ofNullable(porId.get(id));
+    }
+
+    public RespostaJson respostaLista() {
+        return respostaLista;
+    }
+
+    public Optional<RespostaJson> respostaDetalhe(long id) {
+        return Optional.ofNullable(respostasDetalhe.get(id));
+    }
+
+    public IndiceSugestoes sugestoes() {
+        return sugestoes;
+    }
+
+    IndiceInvertido indiceTextual() {
+        return indiceTextual;
+    }
+
+    public int totalClinicas() {
+        return clinicas.size();
+    }
+
+    public Instant geradoEm() {
+        return geradoEm;
+    }
+
+    public List<ClinicaDTO> buscar(FiltrosBusca filtros) {
+        return buscar(selecionar(filtros));
+    }
+
+    /**
+     * Bitmap das posições (na ordem do id) das clínicas que atendem aos filtros, ou {@code null}
+     * sem filtros (todas). Avaliado uma vez, serve à lista ou à página do resultado e às facetas.
+     */
+    public long[] selecionar(FiltrosBusca filtros) {
+        if (filtros.vazio()) {
+            return null;
+        }
+        long[] resultado = new long[BitmapClinicas.palavras(entradas.length)];
+        for (int i = 0; i < entradas.length; i++) {
+            if (entradas[i].atende(filtros)) {
+                BitmapClinicas.marcar(resultado, i);
+            }
+        }
+        return resultado;
+    }
+
+    public List<ClinicaDTO> buscar(long[] selecao) {
+        if (selecao == null) {
+            return clinicas;
+        }
+        List<ClinicaDTO> resultado = new ArrayList<>();
+        for (int i = 0; i < entradas.length; i++) {
+            if (BitmapClinicas.marcado(selecao, i)) {
+                resultado.add(entradas[i].dto);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Facetas da seleção: o bitmap do resultado é intersectado com o de cada valor.
+     */
+    public FacetasDTO facetas(long[] selecao) {
+        return selecao == null ? facetas.contarTodas() : facetas.contar(selecao);
+    }
+
+    /**
+     * Ids, em ordem crescente, das clínicas que atendem à consulta, pelos bitmaps do
+     * {@link IndiceFacetas}.
+     */
+    public int[] ids(ConsultaBooleana consulta) {
+        return facetas.avaliar(consulta);
+    }
+
+    /**
+     * Ids, em ordem crescente, das clínicas que contêm todos os termos da consulta textual, pelo
+     * {@link IndiceInvertido} deste snapshot.
+     */
+    public int[] ids(String consulta) {
+        return indiceTextual.buscar(consulta);
+    }
+
+    /**
+     * Mesma paginação da busca no banco: as clínicas que atendem aos filtros na ordem
+     * {@code (chave, id)}, a partir da posição logo depois do cursor. Os filtros só são avaliados
+     * até a página se completar.
+     */
+    public PaginaClinicasDTO pagina(FiltrosBusca filtros, OrdenacaoClinicas ordenacao, CursorClinicas cursor, int limite) {
+        return pagina(i -> entradas[i].atende(filtros), ordenacao, cursor, limite);
+    }
+
+    /**
+     * A página de uma seleção já avaliada (ver {@link #selecionar(FiltrosBusca)}).
+     */
+    public PaginaClinicasDTO pagina(long[] selecao, OrdenacaoClinicas ordenacao, CursorClinicas cursor, int limite) {
+        return pagina(i -> selecao == null || BitmapClinicas.marcado(selecao, i), ordenacao, cursor, limite);
+    }
+
+    private PaginaClinicasDTO pagina(IntPredicate selecionada, OrdenacaoClinicas ordenacao, CursorClinicas cursor, int limite) {
+        int[] ordem = ordens.get(ordenacao);
+        int posicao = cursor == null ? 0 : inicioDepoisDe(ordem, cursor);
+
+        List<ClinicaDTO> pagina = new ArrayList<>(Math.min(limite, ordem.length));
+        Entrada ultima = null;
+        boolean haProxima = false;
+        for (; posicao < ordem.length; posicao++) {
+            if (!selecionada.test(ordem[posicao])) {
+                continue;
+            }
+            if (pagina.size() == limite) {
+                haProxima = true;
+                break;
+            }
+            Entrada entrada = entradas[ordem[posicao]];
+            pagina.add(entrada.dto);
+            ultima = entrada;
+        }
+
+        String proximoCursor = haProxima
+                ? new CursorClinicas(ordenacao, ultima.chave(ordenacao), ultima.dto.id()).codificar()
+                : null;
+        return PaginaClinicasDTO.builder()
+                .clinicas(pagina)
+                .proximoCursor(proximoCursor)
+                .build();
+    }
+
+    // Primeira posição cuja chave (valor, id) é maior que a do cursor
+    private int inicioDepoisDe(int[] ordem, CursorClinicas cursor) {
+        int inicio = 0;
+        int fim = ordem.length;
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            Entrada entrada = entradas[ordem[meio]];
+            int comparacao = OrdenacaoClinicas.compararChaves(entrada.chave(cursor.ordenacao()), cursor.valor());
+            if (comparacao < 0 || (comparacao == 0 && entrada.dto.id() <= cursor.id())) {
+                inicio = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+        return inicio;
+    }
+
+    private static ClinicaDTO congelar(ClinicaDTO clinica) {
+        List<GrupoDTO> grupos = new ArrayList<>();
+        if (clinica.grupos() != null) {
+            for (GrupoDTO grupo : clinica.grupos()) {
+                List<SubgrupoDTO> subgrupos = new ArrayList<>();
+                if (grupo.subgrupos() != null) {
+                    for (SubgrupoDTO subgrupo : grupo.subgrupos()) {
+                        subgrupos.add(SubgrupoDTO.builder()
+                                .nome(subgrupo.nome())
+                                .procedimentos(subgrupo.procedimentos() != null
+                                        ? List.copyOf(subgrupo.procedimentos())
+                                        : List.of())
+                                .build());
+                    }
+                }
+                grupos.add(GrupoDTO.builder().nome(grupo.nome()).subgrupos(List.copyOf(subgrupos)).build());
+            }
+        }
+        return ClinicaDTO.builder()
+                .id(clinica.id())
+                .nome(clinica.nome())
+                .endereco(clinica.endereco())
+                .municipio(clinica.municipio())
+                .telefone(clinica.telefone())
+                .email(clinica.email())
+                .grupos(List.copyOf(grupos))
+                .build();
+    }
+
+    /**
+     * Uma clínica com as formas canônicas usadas pela busca e pela ordenação.
+     *
+     * @param grupos nomes canônicos dos grupos
+     * @param ramos  um por subgrupo, com o nome canônico do grupo a que pertence
+     */
+    private record Entrada(ClinicaDTO dto, String nome, String municipio, String endereco,
+                           String[] grupos, Ramo[] ramos) {
+
+        static Entrada de(ClinicaDTO clinica) {
+            List<String> grupos = new ArrayList<>();
+            List<Ramo> ramos = new ArrayList<>();
+            for (GrupoDTO grupo : clinica.grupos()) {
+                String nomeGrupo = canonico(grupo.nome());
+                grupos.add(nomeGrupo);
+                for (SubgrupoDTO subgrupo : grupo.subgrupos()) {
+                    Set<String> procedimentos = new HashSet<>();
+                    for (String procedimento : subgrupo.procedimentos()) {
+                        procedimentos.add(canonico(procedimento));
+                    }
+                    ramos.add(new Ramo(nomeGrupo, canonico(subgrupo.nome()), Set.copyOf(procedimentos)));
+                }
+            }
+            return new Entrada(clinica, canonico(clinica.nome()), canonico(clinica.municipio()),
+                    canonico(clinica.endereco()), grupos.toArray(String[]::new), ramos.toArray(Ramo[]::new));
+        }
+
+        String chave(OrdenacaoClinicas ordenacao) {
+            return switch (ordenacao) {
+                case NOME -> nome;
+                case MUNICIPIO -> municipio;
+            };
+        }
+
+        // Mesma semântica do CompiladorBusca: grupo, subgrupo e procedimento valem para o mesmo ramo
+        boolean atende(FiltrosBusca filtros) {
+            return (filtros.ids() == null || Arrays.binarySearch(filtros.ids(), Math.toIntExact(dto.id())) >= 0)
+                    && (filtros.nome() == null || nome.contains(filtros.nome()))
+                    && (filtros.municipio() == null || municipio.contains(filtros.municipio()))
+                    && (filtros.endereco() == null || endereco.contains(filtros.endereco()))
+                    && atendeArvore(filtros);
+        }
+
+        private boolean atendeArvore(FiltrosBusca filtros) {
+            if (filtros.subgrupo() == null && filtros.procedimento() == null) {
+                return filtros.grupo() == null || algumContem(grupos, filtros.grupo());
+            }
+            for (Ramo ramo : ramos) {
+                if (ramo.atende(filtros)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean algumContem(String[] nomes, String trecho) {
+            for (String nome : nomes) {
+                if (nome.contains(trecho)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Um subgrupo com o grupo a que pertence, em formas canônicas.
+     */
+    private record Ramo(String grupo, String subgrupo, Set<String> procedimentos) {
+
+        boolean atende(FiltrosBusca filtros) {
+            return (filtros.grupo() == null || grupo.contains(filtros.grupo()))
+                    && (filtros.subgrupo() == null || subgrupo.contains(filtros.subgrupo()))
+                    && (filtros.procedimento() == null || procedimentos.contains(filtros.procedimento()));
+        }
+    }
+}
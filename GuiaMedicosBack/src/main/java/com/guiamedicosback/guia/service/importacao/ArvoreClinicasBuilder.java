@@ -0,0 +1,232 @@
+package com.guiamedicosback.guia.service.importacao;
+
+import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Procedimento;
+import com.guiamedicosback.guia.entity.Subgrupo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.canonico;
+
+/**
+ * Monta a árvore clínica → grupo → subgrupo → procedimentos a partir das linhas importadas.
+ * <p>
+ * Cada nível é indexado pela forma canônica do nome ({@code Canonicalizador}),
+ * então localizar ou criar um nó custa O(1) por linha em vez de uma varredura da lista de irmãos.
+ * Os procedimentos de cada subgrupo são mantidos sem duplicatas e na ordem de inserção.
+ */
+public class ArvoreClinicasBuilder {
+
+    private final Map<String, NoClinica> clinicas = new LinkedHashMap<>();
+
+    public ArvoreClinicasBuilder() {
+    }
+
+    /**
+     * Cria o builder já indexando clínicas existentes, para que as linhas importadas sejam
+     * mescladas nelas em vez de gerar duplicatas.
+     */
+    public ArvoreClinicasBuilder(Collection<Clinica> existentes) {
+        for (Clinica clinica : existentes) {
+            indexar(clinica);
+        }
+    }
+
+    public void adicionar(LinhaImportacao linha) {
+        adicionar(linha.prestador(), linha.grupo(), linha.subgrupo(), linha.procedimento());
+    }
+
+    /**
+     * Adiciona os níveis da linha do prestador até o último nome preenchido. Uma linha sem
+     * procedimento cria só a clínica, o grupo e o subgrupo, como as que a exportação escreve para
+     * nós sem filhos. Um grupo ou subgrupo em branco antes de um nível preenchido vira um nó de
+     * nome vazio, como nos importadores originais, para que o procedimento não se perca.
+     */
+    public void adicionar(String prestador, String grupo, String subgrupo, String procedimento) {
+        NoClinica noClinica = clinica(prestador);
+        boolean temProcedimento = preenchido(procedimento);
+        boolean temSubgrupo = temProcedimento || preenchido(subgrupo);
+        if (!temSubgrupo && !preenchido(grupo)) {
+            return;
+        }
+        NoGrupo noGrupo = noClinica.grupo(grupo != null ? grupo : "");
+        if (!temSubgrupo) {
+            return;
+        }
+        noGrupo.subgrupo(subgrupo != null ? subgrupo : "").adicionarProcedimento(procedimento);
+    }
+
+    /**
+     * Incorpora outra árvore parcial a esta, como se as linhas dela tivessem sido adicionadas
+     * depois das linhas desta: nós novos entram no fim, na ordem da outra árvore, e nós de mesma
+     * chave mantêm o nome que apareceu primeiro. A outra árvore não deve ser usada depois.
+     */
+    public ArvoreClinicasBuilder mesclar(ArvoreClinicasBuilder outra) {
+        for (Map.Entry<String, NoClinica> entrada : outra.clinicas.entrySet()) {
+            NoClinica existente = clinicas.putIfAbsent(entrada.getKey(), entrada.getValue());
+            if (existente != null) {
+                existente.mesclar(entrada.getValue());
+            }
+        }
+        return this;
+    }
+
+    public List<Clinica> getClinicas() {
+        List<Clinica> resultado = new ArrayList<>(clinicas.size());
+        for (NoClinica no : clinicas.values()) {
+            resultado.add(no.clinica);
+        }
+        return resultado;
+    }
+
+    public int totalClinicas() {
+        return clinicas.size();
+    }
+
+    private static boolean preenchido(String nome) {
+        return nome != null && !nome.isBlank();
+    }
+
+    private NoClinica clinica(String nome) {
+        return clinicas.computeIfAbsent(canonico(nome), _ -> {
+            Clinica novaClinica = new Clinica();
+            novaClinica.setNome(nome);
+            novaClinica.setEndereco("");
+            novaClinica.setMunicipio("");
+            novaClinica.setTelefone("");
+            novaClinica.setEmail("");
+            novaClinica.setGrupos(new ArrayList<>());
+            return new NoClinica(novaClinica);
+        });
+    }
+
+    private void indexar(Clinica clinica) {
+        NoClinica no = clinicas.get(canonico(clinica.getNome()));
+        if (no == null) {
+            if (clinica.getGrupos() == null) {
+                clinica.setGrupos(new ArrayList<>());
+            }
+            clinicas.put(canonico(clinica.getNome()), new NoClinica(clinica));
+        }
+    }
+
+    private static final class NoClinica {
+        private final Clinica clinica;
+        private final Map<String, NoGrupo> grupos = new HashMap<>();
+
+        NoClinica(Clinica clinica) {
+            this.clinica = clinica;
+            for (Grupo grupo : clinica.getGrupos()) {
+                grupos.putIfAbsent(canonico(grupo.getNome()), new NoGrupo(grupo));
+            }
+        }
+
+        NoGrupo grupo(String nome) {
+            return grupos.computeIfAbsent(canonico(nome), _ -> {
+                Grupo novoGrupo = new Grupo();
+                novoGrupo.setNome(nome);
+                novoGrupo.setClinica(clinica);
+                novoGrupo.setSubgrupos(new ArrayList<>());
+                clinica.getGrupos().add(novoGrupo);
+                return new NoGrupo(novoGrupo);
+            });
+        }
+
+        void mesclar(NoClinica outra) {
+            for (Grupo grupo : outra.clinica.getGrupos()) {
+                String chave = canonico(grupo.getNome());
+                NoGrupo noOutro = outra.grupos.get(chave);
+                NoGrupo existente = grupos.get(chave);
+                if (existente != null) {
+                    existente.mesclar(noOutro);
+                } else {
+                    grupo.setClinica(clinica);
+                    clinica.getGrupos().add(grupo);
+                    grupos.put(chave, noOutro);
+                }
+            }
+        }
+    }
+
+    private static final class NoGrupo {
+        private final Grupo grupo;
+        private final Map<String, NoSubgrupo> subgrupos = new HashMap<>();
+
+        NoGrupo(Grupo grupo) {
+            this.grupo = grupo;
+            if (grupo.getSubgrupos() == null) {
+                grupo.setSubgrupos(new ArrayList<>());
+            }
+            for (Subgrupo subgrupo : grupo.getSubgrupos()) {
+                subgrupos.putIfAbsent(canonico(subgrupo.getNome()), new NoSubgrupo(subgrupo));
+            }
+        }
+
+        NoSubgrupo subgrupo(String nome) {
+            return subgrupos.computeIfAbsent(canonico(nome), _ -> {
+                Subgrupo novoSubgrupo = new Subgrupo();
+                novoSubgrupo.setNome(nome);
+                novoSubgrupo.setGrupo(grupo);
+                novoSubgrupo.setProcedimentos(new ArrayList<>());
+                grupo.getSubgrupos().add(novoSubgrupo);
+                return new NoSubgrupo(novoSubgrupo);
+            });
+        }
+
+        void mesclar(NoGrupo outro) {
+            for (Subgrupo subgrupo : outro.grupo.getSubgrupos()) {
+                String chave = canonico(subgrupo.getNome());
+                NoSubgrupo noOutro = outro.subgrupos.get(chave);
+                NoSubgrupo existente = subgrupos.get(chave);
+                if (existente != null) {
+                    for (Procedimento procedimento : subgrupo.getProcedimentos()) {
+                        existente.adicionarProcedimento(procedimento);
+                    }
+                } else {
+                    subgrupo.setGrupo(grupo);
+                    grupo.getSubgrupos().add(subgrupo);
+                    subgrupos.put(chave, noOutro);
+                }
+            }
+        }
+    }
+
+    private static final class NoSubgrupo {
+        private final Subgrupo subgrupo;
+        // Chaves dos procedimentos já presentes; a lista do subgrupo preserva a ordem de inserção
+        private final Set<String> procedimentos = new HashSet<>();
+
+        NoSubgrupo(Subgrupo subgrupo) {
+            this.subgrupo = subgrupo;
+            if (subgrupo.getProcedimentos() == null) {
+                subgrupo.setProcedimentos(new ArrayList<>());
+            }
+            for (Procedimento procedimento : subgrupo.getProcedimentos()) {
+                procedimentos.add(procedimento.getNomeCanonico() != null
+                        ? procedimento.getNomeCanonico()
+                        : canonico(procedimento.getNome()));
+            }
+        }
+
+        void adicionarProcedimento(String procedimento) {
+            if (procedimento == null || procedimento.isBlank()) {
+                return;
+            }
+            adicionarProcedimento(new Procedimento(procedimento));
+        }
+
+        void adicionarProcedimento(Procedimento procedimento) {
+            if (procedimentos.add(procedimento.getNomeCanonico())) {
+                subgrupo.getProcedimentos().add(procedimento);
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.guiamedicosback.guia.service.importacao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static com.guiamedicosback.guia.service.importacao.XlsxStreamingReader.TOTAL_COLUNAS;
+
+/**
+ * Leitor de CSV/TSV com o mesmo layout das planilhas (prestador, grupo, subgrupo, procedimento).
+ * <p>
+ * O arquivo é lido em blocos para um único buffer de bytes, e linhas e campos são delimitados
+ * diretamente sobre esse buffer: delimitador, aspas e quebras de linha são ASCII tanto em UTF-8
+ * quanto em Latin-1. Só as quatro colunas do layout viram {@code String}; o resto da linha não é
+ * copiado nem decodificado.
+ * <p>
+ * Aceita campos entre aspas (com aspas duplicadas como escape e quebras de linha dentro do campo),
+ * detecta o delimitador ({@code ;}, {@code ,} ou tabulação) pelo cabeçalho e a codificação
+ * (UTF-8, com ou sem BOM, ou Latin-1) pelo início do arquivo. Sem BOM, a detecção pelo início é
+ * provisória: cada campo é validado como UTF-8 antes de ser decodificado, e o primeiro campo
+ * inválido passa o resto do arquivo para Latin-1. As linhas anteriores a ele eram UTF-8 válido,
+ * o que num arquivo Latin-1 real só acontece com texto ASCII, igual nas duas codificações.
+ */
+@Slf4j
+@Component
+public class CsvStreamingReader {
+
+    private static final int TAMANHO_BUFFER = 1 << 16;
+    private static final byte ASPAS = '"';
+    private static final byte[] DELIMITADORES = {';', ',', '\t'};
+
+    public void ler(Path arquivo, Consumer<LinhaImportacao> consumidor) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            new Parser(canal, consumidor).ler();
+        }
+    }
+
+    private static final class Parser {
+        private final FileChannel canal;
+        private final Consumer<LinhaImportacao> consumidor;
+        private byte[] buffer = new byte[TAMANHO_BUFFER];
+        private int limite;
+        private int posicao;
+        private boolean fimArquivo;
+
+        private Charset charset;
+        // UTF-8 escolhido pelo conteúdo do início do arquivo, não por BOM: ainda pode virar Latin-1
+        private boolean utf8Provisorio;
+        private byte delimitador;
+
+        // Início, fim e presença de aspas escapadas de cada coluna do registro corrente
+        private final int[] inicios = new int[TOTAL_COLUNAS];
+        private final int[] fins = new int[TOTAL_COLUNAS];
+        private final boolean[] escapes = new boolean[TOTAL_COLUNAS];
+        private int linha;
+        private int linhasProcessadas;
+
+        Parser(FileChannel canal, Consumer<LinhaImportacao> consumidor) {
+            this.canal = canal;
+            this.consumidor = consumidor;
+        }
+
+        void ler() throws IOException {
+            preencher();
+            detectarCodificacao();
+            delimitador = detectarDelimitador();
+
+            boolean cabecalhoLido = false;
+            while (posicao < limite || !fimArquivo) {
+                int inicioRegistro = posicao;
+                int fimRegistro = registro(inicioRegistro);
+                if (fimRegistro < 0) {
+                    // Registro incompleto no fim do buffer: lê mais e recomeça o registro
+                    compactar(inicioRegistro);
+                    preencher();
+                    continue;
+                }
+                posicao = fimRegistro;
+                linha++;
+
+                // Pula a linha do cabeçalho
+                if (!cabecalhoLido) {
+                    cabecalhoLido = true;
+                    continue;
+                }
+
+                String[] colunas = new String[TOTAL_COLUNAS];
+                boolean vazia = true;
+                for (int i = 0; i < TOTAL_COLUNAS; i++) {
+                    colunas[i] = campo(i);
+                    vazia &= colunas[i].isEmpty();
+                }
+                if (vazia) {
+                    continue;
+                }
+                consumidor.accept(new LinhaImportacao(0, linha, colunas[0], colunas[1], colunas[2], colunas[3]));
+                linhasProcessadas++;
+            }
+            log.debug("CSV ({}, delimitador '{}'): {} linhas de dados lidas", charset,
+                    delimitador == '\t' ? "\\t" : (char) delimitador, linhasProcessadas);
+        }
+
+        /**
+         * Delimita o registro que começa em {@code inicio}, guardando a posição das colunas do layout.
+         *
+         * @return a posição logo após o fim do registro, ou -1 se o buffer acaba antes dele
+         */
+        private int registro(int inicio) {
+            Arrays.fill(inicios, 0);
+            Arrays.fill(fins, 0);
+            Arrays.fill(escapes, false);
+            int p = inicio;
+            int coluna = 0;
+
+            while (true) {
+                int inicioCampo;
+                int fimCampo;
+                boolean escape = false;
+
+                if (p < limite && buffer[p] == ASPAS) {
+                    p++;
+                    inicioCampo = p;
+                    while (true) {
+                        if (p >= limite) {
+                            if (!fimArquivo) {
+                                return -1;
+                            }
+                            fimCampo = p;
+                            break;
+                        }
+                        if (buffer[p] == ASPAS) {
+                            if (p + 1 >= limite && !fimArquivo) {
+                                return -1;
+                            }
+                            if (p + 1 < limite && buffer[p + 1] == ASPAS) {
+                                escape = true;
+                                p += 2;
+                                continue;
+                            }
+                            fimCampo = p;
+                            p++;
+                            break;
+                        }
+                        p++;
+                    }
+                    // Qualquer coisa entre a aspa de fechamento e o delimitador é ignorada
+                    while (p < limite && buffer[p] != delimitador && buffer[p] != '\n' && buffer[p] != '\r') {
+                        p++;
+                    }
+                } else {
+                    inicioCampo = p;
+                    while (p < limite && buffer[p] != delimitador && buffer[p] != '\n' && buffer[p] != '\r') {
+                        p++;
+                    }
+                    fimCampo = p;
+                }
+
+                if (p >= limite && !fimArquivo) {
+                    return -1;
+                }
+                if (coluna < TOTAL_COLUNAS) {
+                    inicios[coluna] = inicioCampo;
+                    fins[coluna] = fimCampo;
+                    escapes[coluna] = escape;
+                }
+
+                if (p >= limite) {
+                    return p;
+                }
+                byte b = buffer[p];
+                if (b == delimitador) {
+                    p++;
+                    coluna++;
+                    continue;
+                }
+                if (b == '\r') {
+                    if (p + 1 >= limite && !fimArquivo) {
+                        return -1;
+                    }
+                    p++;
+                    if (p < limite && buffer[p] == '\n') {
+                        p++;
+                    }
+                    return p;
+                }
+                // '\n'
+                return p + 1;
+            }
+        }
+
+        private String campo(int coluna) {
+            int inicio = inicios[coluna];
+            int fim = fins[coluna];
+            if (fim <= inicio) {
+                return "";
+            }
+            if (utf8Provisorio && !utf8Valido(buffer, inicio, fim, false)) {
+                log.debug("CSV: bytes inválidos em UTF-8 na linha {}, lendo o restante como Latin-1", linha);
+                charset = StandardCharsets.ISO_8859_1;
+                utf8Provisorio = false;
+            }
+            if (!escapes[coluna]) {
+                return new String(buffer, inicio, fim - inicio, charset).trim();
+            }
+            // Aspas duplicadas dentro do campo viram uma só
+            byte[] semEscape = new byte[fim - inicio];
+            int tamanho = 0;
+            for (int i = inicio; i < fim; i++) {
+                semEscape[tamanho++] = buffer[i];
+                if (buffer[i] == ASPAS && i + 1 < fim && buffer[i + 1] == ASPAS) {
+                    i++;
+                }
+            }
+            return new String(semEscape, 0, tamanho, charset).trim();
+        }
+
+        private void compactar(int inicio) {
+            int restante = limite - inicio;
+            if (inicio == 0 && limite == buffer.length) {
+                // Um único registro maior que o buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            } else {
+                System.arraycopy(buffer, inicio, buffer, 0, restante);
+            }
+            limite = restante;
+            posicao = 0;
+        }
+
+        private void preencher() throws IOException {
+            ByteBuffer destino = ByteBuffer.wrap(buffer, limite, buffer.length - limite);
+            while (destino.hasRemaining()) {
+                if (canal.read(destino) < 0) {
+                    fimArquivo = true;
+                    break;
+                }
+            }
+            limite = destino.position();
+        }
+
+        /**
+         * UTF-8 se há BOM ou se o início do arquivo é UTF-8 válido; senão Latin-1. Arquivos só com
+         * ASCII dão o mesmo resultado nas duas. Sem BOM, a escolha de UTF-8 é revista campo a campo.
+         */
+        private void detectarCodificacao() {
+            if (limite >= 3 && (buffer[0] & 0xFF) == 0xEF && (buffer[1] & 0xFF) == 0xBB && (buffer[2] & 0xFF) == 0xBF) {
+                charset = StandardCharsets.UTF_8;
+                posicao = 3;
+                return;
+            }
+            utf8Provisorio = utf8Valido(buffer, 0, limite, !fimArquivo);
+            charset = utf8Provisorio ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+        }
+
+        /**
+         * @param permitirCorte se uma sequência cortada pelo fim do intervalo conta como válida (o
+         *                      fim de um bloco lido, e não o de um campo completo)
+         */
+        private static boolean utf8Valido(byte[] bytes, int inicio, int limite, boolean permitirCorte) {
+            int i = inicio;
+            while (i < limite) {
+                int b = bytes[i] & 0xFF;
+                int continuacoes;
+                if (b < 0x80) {
+                    i++;
+                    continue;
+                } else if (b >= 0xC2 && b <= 0xDF) {
+                    continuacoes = 1;
+                } else if (b >= 0xE0 && b <= 0xEF) {
+                    continuacoes = 2;
+                } else if (b >= 0xF0 && b <= 0xF4) {
+                    continuacoes = 3;
+                } else {
+                    return false;
+                }
+                if (i + continuacoes >= limite) {
+                    return permitirCorte;
+                }
+                for (int j = 1; j <= continuacoes; j++) {
+                    if ((bytes[i + j] & 0xC0) != 0x80) {
+                        return false;
+                    }
+                }
+                i += continuacoes + 1;
+            }
+            return true;
+        }
+
+        /**
+         * O delimitador é o candidato mais frequente fora de aspas na primeira linha (o cabeçalho).
+         */
+        private byte detectarDelimitador() {
+            int[] contagem = new int[DELIMITADORES.length];
+            boolean entreAspas = false;
+            for (int p = posicao; p < limite; p++) {
+                byte b = buffer[p];
+                if (b == ASPAS) {
+                    entreAspas = !entreAspas;
+                } else if (!entreAspas && (b == '\n' || b == '\r')) {
+                    break;
+                } else if (!entreAspas) {
+                    for (int i = 0; i < DELIMITADORES.length; i++) {
+                        if (b == DELIMITADORES[i]) {
+                            contagem[i]++;
+                        }
+                    }
+                }
+            }
+            int melhor = 0;
+            for (int i = 1; i < DELIMITADORES.length; i++) {
+                if (contagem[i] > contagem[melhor]) {
+                    melhor = i;
+                }
+            }
+            return DELIMITADORES[melhor];
+        }
+    }
+}
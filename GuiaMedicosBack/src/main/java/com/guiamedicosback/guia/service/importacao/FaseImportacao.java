@@ -0,0 +1,17 @@
+package com.guiamedicosback.guia.service.importacao;
+
+public enum FaseImportacao {
+    NA_FILA,
+    LENDO,
+    GRAVANDO,
+    CONCLUIDA,
+    FALHOU,
+    /**
+     * Descartada antes de iniciar porque um upload mais recente a tornou obsoleta.
+     */
+    DESCARTADA,
+    /**
+     * Não executada porque o arquivo é idêntico ao último aplicado para o mesmo tipo e modo de importação.
+     */
+    SEM_ALTERACOES
+}
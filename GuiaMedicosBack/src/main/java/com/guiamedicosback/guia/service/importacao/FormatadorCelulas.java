@@ -0,0 +1,22 @@
+package com.guiamedicosback.guia.service.importacao;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+/**
+ * Mantém a mesma representação textual de números usada pela leitura via {@code XSSFWorkbook}:
+ * inteiros sem ".0" e datas no formato de {@link java.util.Date#toString()}. Usado pelos leitores
+ * .xlsx e .xls, para que o mesmo conteúdo gere as mesmas linhas nos dois formatos.
+ */
+final class FormatadorCelulas extends DataFormatter {
+    @Override
+    public String formatRawCellContents(double valor, int indiceFormato, String formato, boolean use1904Windowing) {
+        if (DateUtil.isADateFormat(indiceFormato, formato) && DateUtil.isValidExcelDate(valor)) {
+            return DateUtil.getJavaDate(valor, use1904Windowing).toString();
+        }
+        if (valor == Math.floor(valor) && !Double.isInfinite(valor)) {
+            return String.valueOf((long) valor);
+        }
+        return String.valueOf(valor);
+    }
+}
@@ -0,0 +1,158 @@
+package com.guiamedicosback.guia.service.importacao;
+
+import com.guiamedicosback.guia.entity.dto.ImportacaoJobDTO;
+import com.guiamedicosback.guia.entity.dto.ResultadoImportacao;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Estado de uma importação enfileirada. Atualizado pela thread de importação e lido pelas
+ * requisições de status, por isso todos os campos mutáveis são atômicos ou voláteis.
+ */
+@Getter
+public class ImportacaoJob implements ProgressoImportacao {
+
+    private final UUID id;
+    private final TipoImportacao tipo;
+    private final ModoImportacao modo;
+    private final String nomeArquivo;
+    private final Path arquivo;
+    // SHA-256 do conteúdo enviado, em hexadecimal
+    private final String hash;
+    private final Instant criadoEm = Instant.now();
+
+    private final AtomicReference<FaseImportacao> faseAtual = new AtomicReference<>(FaseImportacao.NA_FILA);
+    private final AtomicLong linhasLidas = new AtomicLong();
+    private final AtomicLong linhasGravadas = new AtomicLong();
+    private final List<String> erros = new CopyOnWriteArrayList<>();
+    private volatile Instant iniciadoEm;
+    private volatile Instant concluidoEm;
+    private volatile long inicioFaseNanos;
+    private volatile ResultadoImportacao resultado;
+    // Jobs da fila descartados por este upload, e o upload que descartou este
+    private final List<UUID> descartados = new CopyOnWriteArrayList<>();
+    private volatile UUID substituidoPor;
+
+    public ImportacaoJob(UUID id, TipoImportacao tipo, ModoImportacao modo, String nomeArquivo, Path arquivo, String hash) {
+        this.id = id;
+        this.tipo = tipo;
+        this.modo = modo;
+        this.nomeArquivo = nomeArquivo;
+        this.arquivo = arquivo;
+        this.hash = hash;
+    }
+
+    /**
+     * Tira o job da fila para execução. Retorna {@code false} se ele foi descartado enquanto esperava.
+     */
+    public boolean iniciar() {
+        if (!faseAtual.compareAndSet(FaseImportacao.NA_FILA, FaseImportacao.LENDO)) {
+            return false;
+        }
+        iniciadoEm = Instant.now();
+        inicioFaseNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Descarta o job em favor de {@code substituto} se ele ainda não começou a ser executado.
+     */
+    public boolean descartarSeNaFila(ImportacaoJob substituto) {
+        if (faseAtual.compareAndSet(FaseImportacao.NA_FILA, FaseImportacao.DESCARTADA)) {
+            concluidoEm = Instant.now();
+            substituidoPor = substituto.id;
+            substituto.descartados.add(id);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Encerra o job sem executá-lo: o arquivo é o mesmo já aplicado.
+     */
+    public void concluirSemAlteracoes() {
+        concluidoEm = Instant.now();
+        faseAtual.set(FaseImportacao.SEM_ALTERACOES);
+    }
+
+    public void concluir(ResultadoImportacao resultado) {
+        this.resultado = resultado;
+        this.concluidoEm = Instant.now();
+        faseAtual.set(FaseImportacao.CONCLUIDA);
+    }
+
+    public void falhar(Exception e) {
+        erros.add(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        concluidoEm = Instant.now();
+        faseAtual.set(FaseImportacao.FALHOU);
+    }
+
+    public FaseImportacao getFase() {
+        return faseAtual.get();
+    }
+
+    @Override
+    public void fase(FaseImportacao fase) {
+        if (faseAtual.getAndSet(fase) != fase) {
+            inicioFaseNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void linhaLida() {
+        linhasLidas.incrementAndGet();
+    }
+
+    @Override
+    public void linhasGravadas(long quantidade) {
+        linhasGravadas.addAndGet(quantidade);
+    }
+
+    /**
+     * Vazão da fase corrente: linhas lidas por segundo durante a leitura, linhas gravadas por segundo
+     * durante a gravação e a vazão final de gravação depois de concluído.
+     */
+    private double linhasPorSegundo() {
+        FaseImportacao fase = getFase();
+        if (fase == FaseImportacao.CONCLUIDA && resultado != null) {
+            return resultado.linhasPorSegundo();
+        }
+        double segundos = (System.nanoTime() - inicioFaseNanos) / 1_000_000_000.0;
+        if (segundos <= 0) {
+            return 0;
+        }
+        return switch (fase) {
+            case LENDO -> linhasLidas.get() / segundos;
+            case GRAVANDO -> linhasGravadas.get() / segundos;
+            default -> 0;
+        };
+    }
+
+    public ImportacaoJobDTO toDTO() {
+        return ImportacaoJobDTO.builder()
+                .id(id)
+                .tipo(tipo)
+                .modo(modo)
+                .arquivo(nomeArquivo)
+                .hash(hash)
+                .fase(getFase())
+                .linhasLidas(linhasLidas.get())
+                .linhasGravadas(linhasGravadas.get())
+                .linhasPorSegundo(linhasPorSegundo())
+                .criadoEm(criadoEm)
+                .iniciadoEm(iniciadoEm)
+                .concluidoEm(concluidoEm)
+                .erros(List.copyOf(erros))
+                .resultado(resultado)
+                .descartados(List.copyOf(descartados))
+                .substituidoPor(substituidoPor)
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.guiamedicosback.guia.service.importacao;
+
+import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Procedimento;
+import com.guiamedicosback.guia.entity.Subgrupo;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Impressão digital do conteúdo de clínicas, grupos e subgrupos, gravada junto com cada linha.
+ * <p>
+ * A impressão de um nó cobre os próprios campos e as impressões dos filhos, em ordem. Assim, se a
+ * impressão de uma clínica não mudou, nada abaixo dela mudou, e a importação incremental pode
+ * comparar a árvore nova com a gravada sem carregar os procedimentos. O valor são os 8 primeiros
+ * bytes de um SHA-256.
+ */
+public final class ImpressaoDigital {
+
+    private ImpressaoDigital() {
+    }
+
+    /**
+     * Calcula e grava nas entidades a impressão de cada clínica e de toda a sua subárvore.
+     */
+    public static void calcular(List<Clinica> clinicas) {
+        MessageDigest digest = novoDigest();
+        for (Clinica clinica : clinicas) {
+            calcular(clinica, digest);
+        }
+    }
+
+    public static void calcular(Clinica clinica) {
+        calcular(clinica, novoDigest());
+    }
+
+    private static long calcular(Clinica clinica, MessageDigest digest) {
+        long[] grupos = new long[clinica.getGrupos().size()];
+        for (int i = 0; i < grupos.length; i++) {
+            grupos[i] = calcular(clinica.getGrupos().get(i), digest);
+        }
+
+        texto(digest, clinica.getNome());
+        texto(digest, clinica.getEndereco());
+        texto(digest, clinica.getMunicipio());
+        texto(digest, clinica.getTelefone());
+        texto(digest, clinica.getEmail());
+        for (long grupo : grupos) {
+            numero(digest, grupo);
+        }
+        clinica.setImpressao(resumo(digest));
+        return clinica.getImpressao();
+    }
+
+    private static long calcular(Grupo grupo, MessageDigest digest) {
+        long[] subgrupos = new long[grupo.getSubgrupos().size()];
+        for (int i = 0; i < subgrupos.length; i++) {
+            subgrupos[i] = calcular(grupo.getSubgrupos().get(i), digest);
+        }
+
+        texto(digest, grupo.getNome());
+        for (long subgrupo : subgrupos) {
+            numero(digest, subgrupo);
+        }
+        grupo.setImpressao(resumo(digest));
+        return grupo.getImpressao();
+    }
+
+    private static long calcular(Subgrupo subgrupo, MessageDigest digest) {
+        texto(digest, subgrupo.getNome());
+        if (subgrupo.getProcedimentos() != null) {
+            for (Procedimento procedimento : subgrupo.getProcedimentos()) {
+                texto(digest, procedimento.getNome());
+            }
+        }
+        subgrupo.setImpressao(resumo(digest));
+        return subgrupo.getImpressao();
+    }
+
+    // Cada texto é precedido do seu tamanho, para que ("ab", "c") e ("a", "bc") não colidam;
+    // null usa tamanho -1 e fica distinto de ""
+    private static void texto(MessageDigest digest, String valor) {
+        if (valor == null) {
+            numero(digest, -1);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        numero(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void numero(MessageDigest digest, long valor) {
+        for (int deslocamento = 56; deslocamento >= 0; deslocamento -= 8) {
+            digest.update((byte) (valor >>> deslocamento));
+        }
+    }
+
+    // digest() também reinicia o MessageDigest para o próximo nó
+    private static long resumo(MessageDigest digest) {
+        byte[] hash = digest.digest();
+        long valor = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            valor = (valor << 8) | (hash[i] & 0xFF);
+        }
+        return valor;
+    }
+
+    private static MessageDigest novoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.guiamedicosback.guia.service.importacao;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Escolhe o leitor de acordo com o conteúdo do arquivo. O formato é detectado pelos bytes
+ * iniciais (assinatura ZIP/OOXML ou OLE2), não pela extensão informada pelo cliente; um arquivo
+ * sem assinatura conhecida e sem bytes nulos no início é tratado como texto delimitado (CSV/TSV).
+ */
+@Component
+@RequiredArgsConstructor
+public class LeitorPlanilhas {
+
+    private static final int AMOSTRA = 8192;
+
+    public enum Formato {
+        XLSX,
+        XLS,
+        CSV
+    }
+
+    private final XlsxStreamingReader xlsxReader;
+    private final XlsStreamingReader xlsReader;
+    private final CsvStreamingReader csvReader;
+
+    public Formato formato(Path arquivo) throws IOException {
+        byte[] inicio;
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            inicio = entrada.readNBytes(AMOSTRA);
+        }
+        return switch (FileMagic.valueOf(inicio)) {
+            case OOXML -> Formato.XLSX;
+            case OLE2 -> Formato.XLS;
+            case UNKNOWN -> {
+                if (inicio.length > 0 && pareceTexto(inicio)) {
+                    yield Formato.CSV;
+                }
+                throw formatoNaoSuportado();
+            }
+            default -> throw formatoNaoSuportado();
+        };
+    }
+
+    /**
+     * @param apenasPrimeiraPlanilha lê só a primeira planilha; não se aplica a CSV, que tem uma só
+     */
+    public void ler(Path arquivo, boolean apenasPrimeiraPlanilha, Consumer<LinhaImportacao> consumidor) throws IOException {
+        switch (formato(arquivo)) {
+            case XLSX -> xlsxReader.ler(arquivo, apenasPrimeiraPlanilha, consumidor);
+            case XLS -> xlsReader.ler(arquivo, apenasPrimeiraPlanilha, consumidor);
+            case CSV -> csvReader.ler(arquivo, consumidor);
+        }
+    }
+
+    private static boolean pareceTexto(byte[] inicio) {
+        for (byte b : inicio) {
+            if (b == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IOException formatoNaoSuportado() {
+        return new IOException("Formato de arquivo não suportado. Envie uma planilha Excel (.xlsx ou .xls) ou um arquivo CSV/TSV.");
+    }
+}
@@ -0,0 +1,18 @@
+package com.guiamedicosback.guia.service.importacao;
+
+/**
+ * Uma linha de dados da planilha de importação, já com as quatro colunas do layout
+ * (prestador, grupo, subgrupo, procedimento) lidas e aparadas.
+ *
+ * @param planilha índice (base 0) da planilha de origem
+ * @param linha    número (base 1) da linha na planilha, para mensagens de erro
+ */
+public record LinhaImportacao(
+        int planilha,
+        int linha,
+        String prestador,
+        String grupo,
+        String subgrupo,
+        String procedimento
+) {
+}
@@ -0,0 +1,28 @@
+package com.guiamedicosback.guia.service.importacao;
+
+/**
+ * Estratégia usada para gravar a árvore importada no banco.
+ */
+public enum ModoImportacao {
+    /**
+     * {@code deleteAll} + {@code saveAll} pelo JPA: um INSERT por linha, sem batch (ids IDENTITY).
+     */
+    JPA,
+    /**
+     * Carga via JDBC com INSERTs de múltiplas linhas e ids pré-alocados. Modo padrão
+     * ({@code guia.importacao.modo}).
+     */
+    BULK,
+    /**
+     * Carga JDBC em tabelas de staging seguida de troca atômica ({@code RENAME TABLE}) com as tabelas
+     * vivas. Os leitores continuam vendo o guia anterior, sem bloqueio, até a troca; edições manuais
+     * esperam a troca terminar (ou recebem 409), já que as tabelas vivas são descartadas por ela.
+     */
+    STAGING,
+    /**
+     * Importação incremental: compara a impressão digital de cada clínica, grupo e subgrupo com a
+     * gravada e aplica só os INSERTs, UPDATEs e DELETEs necessários. Os ids dos registros
+     * inalterados são preservados.
+     */
+    DIFF
+}
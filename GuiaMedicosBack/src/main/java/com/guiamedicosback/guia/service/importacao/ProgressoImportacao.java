@@ -0,0 +1,20 @@
+package com.guiamedicosback.guia.service.importacao;
+
+/**
+ * Recebe o andamento de uma importação. Com a leitura paralela das planilhas,
+ * {@link #linhaLida()} pode ser chamado por várias threads ao mesmo tempo.
+ */
+public interface ProgressoImportacao {
+
+    ProgressoImportacao NENHUM = new ProgressoImportacao() {
+    };
+
+    default void fase(FaseImportacao fase) {
+    }
+
+    default void linhaLida() {
+    }
+
+    default void linhasGravadas(long quantidade) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.guiamedicosback.guia.service.importacao;
+
+public enum TipoImportacao {
+    /**
+     * Planilha de clínicas: substitui o guia inteiro.
+     */
+    CLINICAS,
+    /**
+     * Planilha de procedimentos: mescla grupos, subgrupos e procedimentos nas clínicas existentes.
+     */
+    PROCEDIMENTOS
+}
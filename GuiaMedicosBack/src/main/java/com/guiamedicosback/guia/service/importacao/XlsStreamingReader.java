@@ -0,0 +1,200 @@
+package com.guiamedicosback.guia.service.importacao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.hssf.OldExcelFormatException;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static com.guiamedicosback.guia.service.importacao.XlsxStreamingReader.TOTAL_COLUNAS;
+
+/**
+ * Leitor de planilhas .xls (BIFF8) baseado na API de eventos do HSSF.
+ * <p>
+ * Os registros do arquivo são entregues um a um ao listener, sem montar um {@code HSSFWorkbook}:
+ * as células de cada linha são acumuladas e a linha é entregue ao consumidor quando as células
+ * passam para a linha seguinte ou a planilha termina. Fora a tabela de strings compartilhadas,
+ * a memória usada não depende do tamanho do arquivo.
+ */
+@Slf4j
+@Component
+public class XlsStreamingReader {
+
+    /**
+     * @param apenasPrimeiraPlanilha lê só a primeira planilha do arquivo, ignorando as demais
+     */
+    public void ler(Path arquivo, boolean apenasPrimeiraPlanilha, Consumer<LinhaImportacao> consumidor) throws IOException {
+        try (POIFSFileSystem sistemaArquivos = new POIFSFileSystem(arquivo.toFile(), true)) {
+            HSSFRequest requisicao = new HSSFRequest();
+            requisicao.addListenerForAllRecords(new ColetorRegistros(apenasPrimeiraPlanilha, consumidor));
+            new HSSFEventFactory().abortableProcessWorkbookEvents(requisicao, sistemaArquivos);
+        } catch (HSSFUserException | OldExcelFormatException e) {
+            throw new IOException("Erro ao ler o conteúdo da planilha: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recebe os registros do arquivo e monta as linhas. A primeira linha de cada planilha é o cabeçalho.
+     */
+    private static final class ColetorRegistros extends AbortableHSSFListener {
+        private static final short CONTINUAR = 0;
+        private static final short INTERROMPER = 1;
+
+        private final boolean apenasPrimeiraPlanilha;
+        private final Consumer<LinhaImportacao> consumidor;
+        // Acompanha os registros de formato para resolver o formato de cada célula numérica
+        private final FormatTrackingHSSFListener formatos = new FormatTrackingHSSFListener(_ -> {
+        });
+        private final FormatadorCelulas formatador = new FormatadorCelulas();
+        private final String[] colunas = new String[TOTAL_COLUNAS];
+
+        private SSTRecord strings;
+        private boolean data1904;
+        private int planilha = -1;
+        private boolean dentroPlanilha;
+        // Sub-streams dentro da planilha (gráficos) têm BOF/EOF próprios
+        private int subStreams;
+        private int linhaAtual = -1;
+        private boolean cabecalhoLido;
+        private int linhasProcessadas;
+        // Célula de fórmula cujo resultado em texto vem no StringRecord seguinte
+        private int linhaFormula = -1;
+        private int colunaFormula = -1;
+
+        ColetorRegistros(boolean apenasPrimeiraPlanilha, Consumer<LinhaImportacao> consumidor) {
+            this.apenasPrimeiraPlanilha = apenasPrimeiraPlanilha;
+            this.consumidor = consumidor;
+        }
+
+        @Override
+        public short abortableProcessRecord(Record registro) {
+            formatos.processRecordInternally(registro);
+
+            switch (registro) {
+                case BOFRecord bof -> {
+                    if (dentroPlanilha) {
+                        subStreams++;
+                    } else if (bof.getType() == BOFRecord.TYPE_WORKSHEET) {
+                        planilha++;
+                        if (apenasPrimeiraPlanilha && planilha > 0) {
+                            return INTERROMPER;
+                        }
+                        log.debug("Processando planilha {}", planilha + 1);
+                        dentroPlanilha = true;
+                        cabecalhoLido = false;
+                        linhasProcessadas = 0;
+                    }
+                }
+                case EOFRecord _ -> {
+                    if (subStreams > 0) {
+                        subStreams--;
+                    } else if (dentroPlanilha) {
+                        fecharLinha();
+                        dentroPlanilha = false;
+                        log.debug("Planilha {}: {} linhas de dados lidas", planilha + 1, linhasProcessadas);
+                    }
+                }
+                case SSTRecord sst -> strings = sst;
+                case DateWindow1904Record janela -> data1904 = janela.getWindowing() == 1;
+                case LabelSSTRecord label -> celula(label, strings.getString(label.getSSTIndex()).getString());
+                case LabelRecord label -> celula(label, label.getValue());
+                case NumberRecord numero -> celula(numero, formatar(numero, numero.getValue()));
+                case FormulaRecord formula -> formula(formula);
+                case StringRecord texto -> {
+                    if (linhaFormula >= 0) {
+                        celula(linhaFormula, colunaFormula, texto.getString());
+                        linhaFormula = -1;
+                    }
+                }
+                case BoolErrRecord boolErr -> {
+                    if (boolErr.isBoolean()) {
+                        celula(boolErr, boolErr.getBooleanValue() ? "TRUE" : "FALSE");
+                    }
+                }
+                default -> {
+                }
+            }
+            return CONTINUAR;
+        }
+
+        // Usa o resultado calculado gravado no arquivo, como a leitura .xlsx
+        private void formula(FormulaRecord formula) {
+            switch (formula.getCachedResultTypeEnum()) {
+                case STRING -> {
+                    linhaFormula = formula.getRow();
+                    colunaFormula = formula.getColumn();
+                }
+                case NUMERIC -> celula(formula, formatar(formula, formula.getValue()));
+                case BOOLEAN -> celula(formula, formula.getCachedBooleanValue() ? "TRUE" : "FALSE");
+                default -> {
+                }
+            }
+        }
+
+        private String formatar(CellValueRecordInterface celula, double valor) {
+            return formatador.formatRawCellContents(valor, formatos.getFormatIndex(celula),
+                    formatos.getFormatString(celula), data1904);
+        }
+
+        private void celula(CellValueRecordInterface celula, String valor) {
+            celula(celula.getRow(), celula.getColumn(), valor);
+        }
+
+        private void celula(int linha, int coluna, String valor) {
+            if (!dentroPlanilha || subStreams > 0) {
+                return;
+            }
+            if (linha != linhaAtual) {
+                fecharLinha();
+                linhaAtual = linha;
+                Arrays.fill(colunas, "");
+            }
+            if (valor != null && coluna < TOTAL_COLUNAS) {
+                colunas[coluna] = valor.trim();
+            }
+        }
+
+        private void fecharLinha() {
+            if (linhaAtual < 0) {
+                return;
+            }
+            int linha = linhaAtual;
+            linhaAtual = -1;
+
+            // Pula a linha do cabeçalho
+            if (!cabecalhoLido) {
+                cabecalhoLido = true;
+                return;
+            }
+
+            if (colunas[0].isEmpty() && colunas[1].isEmpty() && colunas[2].isEmpty() && colunas[3].isEmpty()) {
+                return;
+            }
+
+            consumidor.accept(new LinhaImportacao(planilha, linha + 1,
+                    colunas[0], colunas[1], colunas[2], colunas[3]));
+            linhasProcessadas++;
+        }
+    }
+}
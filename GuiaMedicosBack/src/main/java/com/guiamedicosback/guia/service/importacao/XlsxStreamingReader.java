@@ -0,0 +1,215 @@
+package com.guiamedicosback.guia.service.importacao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.stereotype.Component;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Leitor de planilhas .xlsx baseado no modelo de eventos (SAX) do POI.
+ * <p>
+ * Ao contrário do {@code XSSFWorkbook}, nenhuma árvore DOM da planilha é montada: as linhas
+ * são entregues uma a uma ao consumidor, e a memória usada fica limitada à tabela de strings
+ * compartilhadas, independente da quantidade de linhas do arquivo.
+ */
+@Slf4j
+@Component
+public class XlsxStreamingReader {
+
+    static final int TOTAL_COLUNAS = 4;
+
+    public void ler(Path arquivo, Consumer<LinhaImportacao> consumidor) throws IOException {
+        ler(arquivo, false, consumidor);
+    }
+
+    /**
+     * @param apenasPrimeiraPlanilha lê só a primeira planilha do arquivo, ignorando as demais
+     */
+    public void ler(Path arquivo, boolean apenasPrimeiraPlanilha, Consumer<LinhaImportacao> consumidor) throws IOException {
+        try (PastaXlsx pasta = abrir(arquivo)) {
+            int total = apenasPrimeiraPlanilha ? Math.min(1, pasta.totalPlanilhas()) : pasta.totalPlanilhas();
+            for (int i = 0; i < total; i++) {
+                pasta.lerPlanilha(i, consumidor);
+            }
+        }
+    }
+
+    /**
+     * Abre o arquivo carregando uma única vez a tabela de strings compartilhadas e os estilos.
+     * As planilhas da pasta podem então ser lidas de forma independente, inclusive em paralelo.
+     */
+    public PastaXlsx abrir(Path arquivo) throws IOException {
+        OPCPackage pacote = abrirPacote(arquivo);
+        try {
+            XSSFReader reader = new XSSFReader(pacote);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pacote, false);
+            StylesTable estilos = reader.getStylesTable();
+
+            List<String> partes = new ArrayList<>();
+            List<String> nomes = new ArrayList<>();
+            XSSFReader.SheetIterator planilhas = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (planilhas.hasNext()) {
+                planilhas.next().close();
+                partes.add(planilhas.getSheetPart().getPartName().getName());
+                nomes.add(planilhas.getSheetName());
+            }
+            log.debug("Total de planilhas no arquivo: {}", partes.size());
+            return new PastaXlsx(arquivo, pacote, strings, estilos, partes, nomes);
+        } catch (OpenXML4JException | SAXException e) {
+            pacote.revert();
+            throw new IOException("Erro ao ler o conteúdo da planilha: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            pacote.revert();
+            throw e;
+        }
+    }
+
+    private static OPCPackage abrirPacote(Path arquivo) throws IOException {
+        try {
+            return OPCPackage.open(arquivo.toFile(), PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException("Não foi possível processar o arquivo. Certifique-se de que é um arquivo Excel válido (.xlsx).", e);
+        }
+    }
+
+    /**
+     * Pasta de trabalho aberta para leitura em streaming. Strings compartilhadas e estilos são
+     * somente leitura e ficam compartilhados; cada chamada de {@link #lerPlanilha} abre seu próprio
+     * acesso ao pacote, então planilhas diferentes podem ser lidas ao mesmo tempo por threads diferentes.
+     */
+    public static final class PastaXlsx implements AutoCloseable {
+        private final Path arquivo;
+        private final OPCPackage pacote;
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable estilos;
+        private final List<String> partes;
+        private final List<String> nomes;
+
+        private PastaXlsx(Path arquivo, OPCPackage pacote, ReadOnlySharedStringsTable strings, StylesTable estilos,
+                          List<String> partes, List<String> nomes) {
+            this.arquivo = arquivo;
+            this.pacote = pacote;
+            this.strings = strings;
+            this.estilos = estilos;
+            this.partes = partes;
+            this.nomes = nomes;
+        }
+
+        public int totalPlanilhas() {
+            return partes.size();
+        }
+
+        public void lerPlanilha(int indice, Consumer<LinhaImportacao> consumidor) throws IOException {
+            log.debug("Processando planilha {}: '{}'", indice + 1, nomes.get(indice));
+            OPCPackage pacotePlanilha = abrirPacote(arquivo);
+            try (InputStream dados = pacotePlanilha.getPart(PackagingURIHelper.createPartName(partes.get(indice))).getInputStream()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(estilos, strings,
+                        new ColetorLinhas(indice, consumidor), new FormatadorCelulas(), false));
+                parser.parse(new InputSource(dados));
+            } catch (InvalidFormatException | SAXException | ParserConfigurationException e) {
+                throw new IOException("Erro ao ler o conteúdo da planilha: " + e.getMessage(), e);
+            } finally {
+                // Pacote aberto somente para leitura: revert() descarta sem tentar salvar
+                pacotePlanilha.revert();
+            }
+        }
+
+        @Override
+        public void close() {
+            pacote.revert();
+        }
+    }
+
+    /**
+     * Converte a referência de célula ("AB12") no índice da coluna (base 0) sem criar objetos.
+     */
+    static int indiceColuna(String referencia) {
+        int coluna = 0;
+        for (int i = 0; i < referencia.length(); i++) {
+            char c = referencia.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            coluna = coluna * 26 + (c - 'A' + 1);
+        }
+        return coluna - 1;
+    }
+
+    /**
+     * Acumula as quatro colunas do layout para a linha corrente e a entrega ao consumidor
+     * quando a linha termina. A primeira linha de cada planilha é o cabeçalho.
+     */
+    private static final class ColetorLinhas implements SheetContentsHandler {
+        private final int planilha;
+        private final Consumer<LinhaImportacao> consumidor;
+        private final String[] colunas = new String[TOTAL_COLUNAS];
+        private boolean cabecalhoLido;
+        private int linhasProcessadas;
+
+        ColetorLinhas(int planilha, Consumer<LinhaImportacao> consumidor) {
+            this.planilha = planilha;
+            this.consumidor = consumidor;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(colunas, "");
+        }
+
+        @Override
+        public void cell(String referencia, String valor, XSSFComment comentario) {
+            if (referencia == null || valor == null) {
+                return;
+            }
+            int coluna = indiceColuna(referencia);
+            if (coluna >= 0 && coluna < TOTAL_COLUNAS) {
+                colunas[coluna] = valor.trim();
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            // Pula a linha do cabeçalho
+            if (!cabecalhoLido) {
+                cabecalhoLido = true;
+                return;
+            }
+
+            if (colunas[0].isEmpty() && colunas[1].isEmpty() && colunas[2].isEmpty() && colunas[3].isEmpty()) {
+                return;
+            }
+
+            consumidor.accept(new LinhaImportacao(planilha, rowNum + 1,
+                    colunas[0], colunas[1], colunas[2], colunas[3]));
+            linhasProcessadas++;
+        }
+
+        @Override
+        public void endSheet() {
+            log.debug("Planilha {}: {} linhas de dados lidas", planilha + 1, linhasProcessadas);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.guiamedicosback.guia.service.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forma canônica de textos para comparação e busca: sem acentos, em minúsculas, sem espaços nas
+ * pontas e com sequências de espaços reduzidas a um. "  Clínica   São José" e "clinica sao jose"
+ * têm a mesma forma canônica.
+ * <p>
+ * A conversão de cada caractere vem de uma tabela montada uma única vez, cobrindo Latin-1 e
+ * Latin Extended-A (todo o português). Cada chamada consulta a tabela, sem regex nem
+ * {@link Normalizer}, e não aloca nada quando o texto já está na forma canônica.
+ */
+public final class Canonicalizador {
+
+    private static final char ESPACO = ' ';
+    // Marca os caracteres que são descartados (acentos combinantes)
+    private static final char REMOVER = '\uFFFF';
+    private static final int TAMANHO_TABELA = 0x0250;
+    private static final char[] TABELA = new char[TAMANHO_TABELA];
+
+    static {
+        for (int c = 0; c < TAMANHO_TABELA; c++) {
+            TABELA[c] = dobrar((char) c);
+        }
+    }
+
+    private Canonicalizador() {
+    }
+
+    public static String canonico(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        if (jaCanonico(texto)) {
+            return texto;
+        }
+
+        char[] saida = new char[texto.length()];
+        int escritos = 0;
+        boolean espacoPendente = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = converter(texto.charAt(i));
+            if (c == REMOVER) {
+                continue;
+            }
+            if (c == ESPACO) {
+                // Espaços só são escritos antes do próximo caractere visível: os das pontas somem
+                espacoPendente = escritos > 0;
+                continue;
+            }
+            if (espacoPendente) {
+                saida[escritos++] = ESPACO;
+                espacoPendente = false;
+            }
+            saida[escritos++] = c;
+        }
+        return new String(saida, 0, escritos);
+    }
+
+    private static boolean jaCanonico(String texto) {
+        boolean anteriorEspaco = true;
+        for (int i = 0; i < texto.length(); i++) {
+            char original = texto.charAt(i);
+            char c = converter(original);
+            if (c != original) {
+                return false;
+            }
+            if (c == ESPACO) {
+                if (anteriorEspaco) {
+                    return false;
+                }
+                anteriorEspaco = true;
+            } else {
+                anteriorEspaco = false;
+            }
+        }
+        // Texto vazio ou terminado em espaço
+        return !anteriorEspaco || texto.isEmpty();
+    }
+
+    /**
+     * Termos da forma canônica do texto: as sequências de letras e dígitos, na ordem em que
+     * aparecem. "Raio-X (tórax)" tem os termos "raio", "x" e "torax".
+     */
+    public static List<String> termos(String texto) {
+        String canonico = canonico(texto);
+        List<String> termos = new ArrayList<>();
+        int inicio = -1;
+        for (int i = 0; i <= canonico.length(); i++) {
+            boolean parteDoTermo = i < canonico.length() && Character.isLetterOrDigit(canonico.charAt(i));
+            if (parteDoTermo && inicio < 0) {
+                inicio = i;
+            } else if (!parteDoTermo && inicio >= 0) {
+                termos.add(canonico.substring(inicio, i));
+                inicio = -1;
+            }
+        }
+        return termos;
+    }
+
+    /**
+     * Dois textos são equivalentes se têm a mesma forma canônica.
+     */
+    public static boolean equivalentes(String a, String b) {
+        return canonico(a).equals(canonico(b));
+    }
+
+    private static char converter(char c) {
+        if (c < TAMANHO_TABELA) {
+            return TABELA[c];
+        }
+        if (c >= '\u0300' && c <= '\u036F') {
+            return REMOVER;
+        }
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+            return ESPACO;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    // Usado só para montar a tabela
+    private static char dobrar(char c) {
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+            return ESPACO;
+        }
+        if (Character.getType(c) == Character.NON_SPACING_MARK) {
+            return REMOVER;
+        }
+        String decomposto = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFKD);
+        char base = decomposto.isEmpty() ? c : decomposto.charAt(0);
+        // Ligaduras e afins que não decompõem em uma única letra ficam como estão
+        if (decomposto.length() > 1 && Character.getType(decomposto.charAt(1)) != Character.NON_SPACING_MARK) {
+            base = c;
+        }
+        return Character.toLowerCase(base);
+    }
+}
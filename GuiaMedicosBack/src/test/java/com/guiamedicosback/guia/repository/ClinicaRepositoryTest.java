@@ -0,0 +1,160 @@
+package com.guiamedicosback.guia.repository;
+
+import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Procedimento;
+import com.guiamedicosback.guia.entity.ProcedimentoCatalogo;
+import com.guiamedicosback.guia.entity.Subgrupo;
+import com.guiamedicosback.guia.entity.dto.ClinicaDTO;
+import com.guiamedicosback.guia.service.ClinicaMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jpa.test.autoconfigure.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.canonico;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(ClinicaMapper.class)
+class ClinicaRepositoryTest {
+
+    @Autowired
+    private ClinicaRepository clinicaRepository;
+
+    @Autowired
+    private ClinicaMapper clinicaMapper;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics estatisticas;
+
+    private final Map<String, ProcedimentoCatalogo> catalogo = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void leituraDoGuiaUsaUmaConsultaIndependenteDoNumeroDeClinicas() {
+        gravarClinicas(0, 2);
+        long comPoucasClinicas = consultasParaLerGuia(2);
+
+        gravarClinicas(2, 50);
+        long comMuitasClinicas = consultasParaLerGuia(50);
+
+        assertEquals(1, comPoucasClinicas);
+        assertEquals(comPoucasClinicas, comMuitasClinicas);
+    }
+
+    @Test
+    void leituraPorIdsMontaAsArvoresCompletas() {
+        List<Clinica> clinicas = gravarClinicas(0, 3);
+        entityManager.clear();
+
+        estatisticas.clear();
+        List<ClinicaDTO> dtos = clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore(
+                List.of(clinicas.get(0).getId(), clinicas.get(2).getId())));
+
+        assertEquals(1, estatisticas.getPrepareStatementCount());
+        assertEquals(2, dtos.size());
+        ClinicaDTO dto = dtos.get(1);
+        assertEquals("Clínica 2", dto.nome());
+        assertEquals(List.of("Grupo 0", "Grupo 1"), dto.grupos().stream().map(g -> g.nome()).toList());
+        assertEquals(List.of("Subgrupo 0", "Subgrupo 1"),
+                dto.grupos().get(1).subgrupos().stream().map(s -> s.nome()).toList());
+        assertEquals(List.of("Procedimento 0", "Procedimento 1", "Procedimento 2"),
+                dto.grupos().get(1).subgrupos().get(1).procedimentos());
+    }
+
+    @Test
+    void clinicaSemGruposESubgrupoSemProcedimentosVemComListasVazias() {
+        Clinica vazia = new Clinica();
+        vazia.setNome("Sem grupos");
+        Clinica comSubgrupoVazio = novaClinica("Com subgrupo vazio");
+        Grupo grupo = novoGrupo(comSubgrupoVazio, "Grupo");
+        novoSubgrupo(grupo, "Subgrupo");
+        entityManager.persist(vazia);
+        entityManager.persist(comSubgrupoVazio);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ClinicaDTO> dtos = clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore());
+
+        assertEquals(2, dtos.size());
+        assertEquals(List.of(), dtos.get(0).grupos());
+        assertEquals(List.of(), dtos.get(1).grupos().get(0).subgrupos().get(0).procedimentos());
+    }
+
+    private long consultasParaLerGuia(int totalEsperado) {
+        entityManager.clear();
+        estatisticas.clear();
+        List<ClinicaDTO> dtos = clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore());
+        assertEquals(totalEsperado, dtos.size());
+        return estatisticas.getPrepareStatementCount();
+    }
+
+    // Cada clínica com 2 grupos × 2 subgrupos × 3 procedimentos
+    private List<Clinica> gravarClinicas(int primeira, int ate) {
+        List<Clinica> clinicas = new ArrayList<>();
+        for (int i = primeira; i < ate; i++) {
+            Clinica clinica = novaClinica("Clínica " + i);
+            for (int g = 0; g < 2; g++) {
+                Grupo grupo = novoGrupo(clinica, "Grupo " + g);
+                for (int s = 0; s < 2; s++) {
+                    Subgrupo subgrupo = novoSubgrupo(grupo, "Subgrupo " + s);
+                    for (int p = 0; p < 3; p++) {
+                        subgrupo.getProcedimentos().add(new Procedimento(entradaCatalogo("Procedimento " + p)));
+                    }
+                }
+            }
+            entityManager.persist(clinica);
+            clinicas.add(clinica);
+        }
+        entityManager.flush();
+        return clinicas;
+    }
+
+    private ProcedimentoCatalogo entradaCatalogo(String nome) {
+        return catalogo.computeIfAbsent(nome, _ ->
+                entityManager.persist(new ProcedimentoCatalogo(null, nome, canonico(nome))));
+    }
+
+    private static Clinica novaClinica(String nome) {
+        Clinica clinica = new Clinica();
+        clinica.setNome(nome);
+        clinica.setGrupos(new ArrayList<>());
+        return clinica;
+    }
+
+    private static Grupo novoGrupo(Clinica clinica, String nome) {
+        Grupo grupo = new Grupo(nome);
+        grupo.setClinica(clinica);
+        grupo.setSubgrupos(new ArrayList<>());
+        clinica.getGrupos().add(grupo);
+        return grupo;
+    }
+
+    private static Subgrupo novoSubgrupo(Grupo grupo, String nome) {
+        Subgrupo subgrupo = new Subgrupo(nome);
+        subgrupo.setGrupo(grupo);
+        subgrupo.setProcedimentos(new ArrayList<>());
+        grupo.getSubgrupos().add(subgrupo);
+        return subgrupo;
+    }
+}
@@ -0,0 +1,222 @@
+package com.guiamedicosback.guia.service.busca;
+
+import com.guiamedicosback.guia.entity.Clinica;
+import com.guiamedicosback.guia.entity.Grupo;
+import com.guiamedicosback.guia.entity.Procedimento;
+import com.guiamedicosback.guia.entity.ProcedimentoCatalogo;
+import com.guiamedicosback.guia.entity.Subgrupo;
+import com.guiamedicosback.guia.repository.ClinicaBulkRepository;
+import com.guiamedicosback.guia.repository.ClinicaRepository;
+import com.guiamedicosback.guia.service.ClinicaMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static com.guiamedicosback.guia.service.utils.Canonicalizador.canonico;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara, num guia sintético grande, a busca com os joins independentes por critério (como era
+ * antes do {@link CompiladorBusca}) com o semi-join sobre um único caminho de joins: linhas
+ * devolvidas pelo banco e tempo mediano de cada consulta.
+ * <p>
+ * Não roda com {@code mvn test} (o nome não segue o padrão do Surefire). Os tempos só valem no
+ * MySQL: o H2 embutido do {@code @DataJpaTest} reavalia a subconsulta do {@code IN} para cada
+ * clínica, e a consulta nova cresce com o quadrado do guia. Para rodar no MySQL:
+ * <pre>
+ * mvn test -Dtest=BuscaClinicasBenchmark -DargLine="-Dbenchmark.clinicas=5000
+ *     -Dspring.test.database.replace=none -Dspring.jpa.hibernate.ddl-auto=create-drop
+ *     -Dspring.datasource.url=jdbc:mysql://localhost/guia_benchmark
+ *     -Dspring.datasource.username=... -Dspring.datasource.password=..."
+ * </pre>
+ * O que o teste garante em qualquer banco são as linhas: sem repetições e iguais às do snapshot.
+ */
+@Slf4j
+@DataJpaTest
+@Import(ClinicaMapper.class)
+class BuscaClinicasBenchmark {
+
+    private static final int CLINICAS = Integer.getInteger("benchmark.clinicas", 5000);
+    private static final int EXECUCOES = 15;
+
+    private static final String[] GRUPOS = {"Imagem", "Laboratório", "Consultas", "Exames"};
+    private static final String[] SUBGRUPOS = {"Raio X", "Tomografia", "Ultrassom", "Ressonância"};
+    private static final int PROCEDIMENTOS_POR_SUBGRUPO = 6;
+    private static final String PROCEDIMENTO_BUSCADO = "Raio X de tórax";
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ClinicaRepository clinicaRepository;
+
+    @Autowired
+    private ClinicaMapper clinicaMapper;
+
+    private SnapshotGuia snapshot;
+
+    private final Map<String, ProcedimentoCatalogo> catalogo = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        new ClinicaBulkRepository(new JdbcTemplate(dataSource)).substituirTudo(guiaSintetico(), _ -> {
+        });
+        entityManager.clear();
+        snapshot = SnapshotGuia.de(clinicaMapper.toClinicaDTOs(clinicaRepository.findLinhasArvore()),
+                JsonMapper.builder().build());
+    }
+
+    @Test
+    void grupoSubgrupoEProcedimentoNoMesmoRamo() {
+        comparar("grupo + subgrupo + procedimento",
+                FiltrosBusca.de(null, null, null, PROCEDIMENTO_BUSCADO, "imagem", "raio"));
+    }
+
+    @Test
+    void criteriosAmplosQueMultiplicamLinhas() {
+        comparar("critérios amplos", FiltrosBusca.de(null, null, null, PROCEDIMENTO_BUSCADO, "a", "a"));
+    }
+
+    @Test
+    void somenteGrupo() {
+        comparar("só grupo", FiltrosBusca.de(null, null, null, null, "a", null));
+    }
+
+    private void comparar(String cenario, FiltrosBusca filtros) {
+        List<Long> antes = ids(especificacaoAnterior(filtros), false);
+        List<Long> antesDistintos = ids(especificacaoAnterior(filtros), true);
+        Integer procedimentoId = filtros.procedimento() != null
+                ? catalogo.get(filtros.procedimento()).getId()
+                : null;
+        List<Long> depois = ids(CompiladorBusca.compilar(filtros, procedimentoId), false);
+
+        double msAntes = mediana(() -> ids(especificacaoAnterior(filtros), true));
+        double msDepois = mediana(() -> ids(CompiladorBusca.compilar(filtros, procedimentoId), false));
+        log.info("{} ({} clínicas): antes {} linhas ({} distintas) em {} ms; depois {} linhas em {} ms",
+                cenario, CLINICAS, antes.size(), antesDistintos.size(), String.format("%.1f", msAntes),
+                depois.size(), String.format("%.1f", msDepois));
+
+        assertEquals(depois.size(), new HashSet<>(depois).size(), "a consulta nova não repete clínicas");
+        assertTrue(antesDistintos.containsAll(depois));
+        // A busca no banco e a do snapshot em memória encontram as mesmas clínicas
+        assertEquals(snapshot.buscar(filtros).stream().map(c -> c.id()).sorted().toList(),
+                depois.stream().sorted().toList());
+    }
+
+    private List<Long> ids(Specification<Clinica> spec, boolean distintos) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Clinica> root = query.from(Clinica.class);
+        query.select(root.<Long>get("id")).distinct(distintos);
+        Predicate filtro = spec.toPredicate(root, query, cb);
+        if (filtro != null) {
+            query.where(filtro);
+        }
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private static double mediana(Supplier<List<Long>> consulta) {
+        for (int i = 0; i < 3; i++) {
+            consulta.get();
+        }
+        double[] tempos = new double[EXECUCOES];
+        for (int i = 0; i < EXECUCOES; i++) {
+            long inicio = System.nanoTime();
+            consulta.get();
+            tempos[i] = (System.nanoTime() - inicio) / 1_000_000.0;
+        }
+        Arrays.sort(tempos);
+        return tempos[EXECUCOES / 2];
+    }
+
+    // Os filtros de árvore como eram antes: um caminho de joins independente para cada critério
+    private static Specification<Clinica> especificacaoAnterior(FiltrosBusca filtros) {
+        Specification<Clinica> spec = (_, _, _) -> null;
+        if (filtros.procedimento() != null) {
+            spec = spec.and((root, _, cb) -> {
+                Join<Clinica, Grupo> grupos = root.join("grupos");
+                Join<Grupo, Subgrupo> subgrupos = grupos.join("subgrupos");
+                Join<Subgrupo, Procedimento> procedimentos = subgrupos.join("procedimentos");
+                return cb.equal(procedimentos.get("catalogo").get("nomeCanonico"), filtros.procedimento());
+            });
+        }
+        if (filtros.grupo() != null) {
+            spec = spec.and((root, _, cb) -> {
+                Join<Clinica, Grupo> grupos = root.join("grupos");
+                return cb.like(grupos.get("nomeCanonico"), "%" + filtros.grupo() + "%");
+            });
+        }
+        if (filtros.subgrupo() != null) {
+            spec = spec.and((root, _, cb) -> {
+                Join<Clinica, Grupo> grupos = root.join("grupos");
+                Join<Grupo, Subgrupo> subgrupos = grupos.join("subgrupos");
+                return cb.like(subgrupos.get("nomeCanonico"), "%" + filtros.subgrupo() + "%");
+            });
+        }
+        return spec;
+    }
+
+    // Toda clínica tem 4 grupos × 4 subgrupos × 6 procedimentos, e o procedimento buscado num
+    // ramo que varia: só 1 em cada 16 clínicas o tem em Imagem > Raio X
+    private List<Clinica> guiaSintetico() {
+        List<Clinica> clinicas = new ArrayList<>(CLINICAS);
+        for (int i = 0; i < CLINICAS; i++) {
+            Clinica clinica = new Clinica();
+            clinica.setNome("Clínica " + i);
+            clinica.setMunicipio("Município " + (i % 50));
+            clinica.setGrupos(new ArrayList<>());
+            for (int g = 0; g < GRUPOS.length; g++) {
+                Grupo grupo = new Grupo(GRUPOS[g]);
+                grupo.setSubgrupos(new ArrayList<>());
+                clinica.getGrupos().add(grupo);
+                for (int s = 0; s < SUBGRUPOS.length; s++) {
+                    Subgrupo subgrupo = new Subgrupo(SUBGRUPOS[s]);
+                    subgrupo.setProcedimentos(new ArrayList<>());
+                    grupo.getSubgrupos().add(subgrupo);
+                    for (int p = 0; p < PROCEDIMENTOS_POR_SUBGRUPO; p++) {
+                        subgrupo.getProcedimentos().add(new Procedimento(entradaCatalogo(SUBGRUPOS[s] + " " + p)));
+                    }
+                    if (g == i % GRUPOS.length && s == (i / GRUPOS.length) % SUBGRUPOS.length) {
+                        subgrupo.getProcedimentos().add(new Procedimento(entradaCatalogo(PROCEDIMENTO_BUSCADO)));
+                    }
+                }
+            }
+            clinicas.add(clinica);
+        }
+        return clinicas;
+    }
+
+    // Indexado pela forma canônica, como o CatalogoProcedimentos
+    private ProcedimentoCatalogo entradaCatalogo(String nome) {
+        return catalogo.computeIfAbsent(canonico(nome), chave -> {
+            ProcedimentoCatalogo entrada = new ProcedimentoCatalogo(null, nome, chave);
+            entityManager.persist(entrada);
+            return entrada;
+        });
+    }
+}
@@ -0,0 +1,47 @@
+package com.guiamedicosback.guia.service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CanonicalizadorTest {
+
+    // Letras, dígitos e pontuação dos arquivos do guia, acentos do português nas duas caixas,
+    // espaços variados e acentos combinantes (texto decomposto)
+    private static final String ALFABETO = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789"
+            + "-/().,;:'&áàâãéêíóôõúüçÁÀÂÃÉÊÍÓÔÕÚÜÇ   \t\n\u0301\u0303\u0327";
+
+    @Test
+    void mesmaFormaQueNormalizerComRegexEm200MilTextosAleatorios() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            char[] texto = new char[random.nextInt(40)];
+            for (int j = 0; j < texto.length; j++) {
+                texto[j] = ALFABETO.charAt(random.nextInt(ALFABETO.length()));
+            }
+            String original = new String(texto);
+            assertEquals(referencia(original), Canonicalizador.canonico(original), () -> "texto: [" + original + "]");
+        }
+    }
+
+    @Test
+    void textoJaCanonicoEDevolvidoSemCopia() {
+        String texto = "clinica sao jose";
+        assertSame(texto, Canonicalizador.canonico(texto));
+    }
+
+    @Test
+    void nuloViraTextoVazio() {
+        assertEquals("", Canonicalizador.canonico(null));
+    }
+
+    // Implementação anterior (ArvoreClinicasBuilder.chave), mantida como referência
+    private static String referencia(String s) {
+        String t = Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return t.toLowerCase().trim().replaceAll("\\s+", " ");
+    }
+}